@@ -0,0 +1,38 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "crawler-settings")
+public class CrawlerSettings {
+    private String userAgent = "Mozilla/5.0";
+    private String referrer = "https://lenta.ru/";
+    private int timeoutMs = 15000;
+    private int minTimeoutMs = 3000;
+    private int maxConnections = 64;
+    private int maxConnectionsPerHost = 8;
+    private int crawlThreads = 64;
+    private int workersPerSite = 16;
+    private int maxDepth = 0;
+    private int maxPagesPerSite = 0;
+    private int checkpointBatchSize = 500;
+    private int reindexThreads = 8;
+    private int reindexBatchSize = 50;
+    private boolean respectRobots = true;
+    private boolean useSitemaps = true;
+    private int maxSitemapUrls = 50000;
+    private long maxCrawlDelayMs = 10000;
+    private double hostMaxRate = 10;
+    private double hostMinRate = 0.5;
+    private double hostRateStep = 0.1;
+    private double hostWindowStep = 0.1;
+    private long hostLatencyTargetMs = 3000;
+    private int maxRetries = 2;
+    private long retryBaseDelayMs = 500;
+    private long retryMaxDelayMs = 30000;
+}
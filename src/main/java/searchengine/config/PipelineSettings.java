@@ -0,0 +1,22 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "pipeline-settings")
+public class PipelineSettings {
+    private int parseThreads = 4;
+    private int lemmaThreads = Runtime.getRuntime().availableProcessors();
+    private int persistThreads = 4;
+    /** Ёмкость очереди перед каждой стадией; при заполнении предыдущая стадия ждёт. */
+    private int queueCapacity = 256;
+    /** Запись лемм и индекса копится по сайту и сбрасывается одним пакетом по любому из порогов. */
+    private int batchMaxPages = 200;
+    private int batchMaxPostings = 50_000;
+    private long batchFlushIntervalMs = 2000;
+}
@@ -0,0 +1,39 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "search-settings")
+public class SearchSettings {
+    private static final Set<String> SCORERS = Set.of("bm25", "rank-sum");
+
+    /** Функция ранжирования: bm25 или rank-sum (сумма частот лемм). */
+    private String scorer = "bm25";
+    /** Насыщение частоты термина в BM25. */
+    private float k1 = 1.2f;
+    /** Вес нормировки по длине страницы в BM25. */
+    private float b = 0.75f;
+    /** Хранить позиции слов в индексе: фразовый поиск, близость слов, быстрые сниппеты. */
+    private boolean positionalIndex = true;
+    /** Прибавка к оценке страницы, где все слова запроса стоят подряд. */
+    private float proximityWeight = 0.5f;
+    /** Предел кэша результатов поиска в байтах (оценка по числу найденных страниц). */
+    private long resultCacheMaxBytes = 64L * 1024 * 1024;
+    /** Сколько минут хранить результат, даже если индекс сайтов не менялся. */
+    private long resultCacheTtlMinutes = 10;
+
+    public void setScorer(String scorer) {
+        if (!SCORERS.contains(scorer)) {
+            throw new IllegalArgumentException("Неизвестная функция ранжирования search-settings.scorer: "
+                    + scorer + ", допустимы " + SCORERS);
+        }
+        this.scorer = scorer;
+    }
+}
@@ -0,0 +1,20 @@
+package searchengine.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+@Getter
+@Setter
+@Component
+@ConfigurationProperties(prefix = "storage-settings")
+public class StorageSettings {
+    private ContentCompression contentCompression = ContentCompression.DEFLATE;
+    private int compressionLevel = 6;
+
+    public enum ContentCompression {
+        NONE,
+        DEFLATE
+    }
+}
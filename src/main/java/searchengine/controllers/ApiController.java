@@ -1,13 +1,17 @@
 package searchengine.controllers;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import searchengine.dto.statistics.StatisticsResponse;
+import searchengine.enums.IndexingMode;
 import searchengine.services.StatisticsService;
 import searchengine.services.impl.indexing.IndexingServiceImpl;
 import searchengine.services.impl.searchImpl.SearchService;
 import searchengine.web.errors.BadRequestException;
 import searchengine.web.errors.ConflictException;
 
+import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 
 @RestController
@@ -24,8 +28,14 @@ public class ApiController {
     }
 
     @GetMapping("/startIndexing")
-    public Map<String, Object> startIndexing() {
-        if (!indexingService.startIndexing()) {
+    public Map<String, Object> startIndexing(@RequestParam(defaultValue = "full") String mode) {
+        IndexingMode indexingMode;
+        try {
+            indexingMode = IndexingMode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BadRequestException("Неизвестный режим индексации: " + mode);
+        }
+        if (!indexingService.startIndexing(indexingMode)) {
             return Map.of("result", true);
         }
         return Map.of("result", true);
@@ -50,6 +60,18 @@ public class ApiController {
         return result;
     }
 
+    @PostMapping("/indexPages")
+    public ResponseEntity<Map<String, Object>> indexPages(@RequestParam("url") List<String> urls) {
+        if (urls.isEmpty()) {
+            throw new BadRequestException("Не задано ни одной страницы");
+        }
+        Map<String, Object> result = indexingService.handlePagesUpdate(urls);
+        if (Boolean.FALSE.equals(result.get("result"))) {
+            return ResponseEntity.badRequest().body(result);
+        }
+        return ResponseEntity.ok(result);
+    }
+
     @GetMapping("/search")
     public Object search(@RequestParam String query,
                          @RequestParam(required = false) String site,
@@ -0,0 +1,8 @@
+package searchengine.enums;
+
+public enum IndexingMode {
+    FULL,
+    RESUME,
+    INCREMENTAL,
+    BULK
+}
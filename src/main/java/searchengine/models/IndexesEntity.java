@@ -24,4 +24,8 @@ public class IndexesEntity {
 
     @Column(nullable = false, name = "`rank`")
     private float rank;
+
+    /** Позиции слов леммы на странице, дельты в varint; null без позиционного индекса. */
+    @Column(name = "positions")
+    private byte[] positions;
 }
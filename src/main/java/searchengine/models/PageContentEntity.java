@@ -0,0 +1,24 @@
+package searchengine.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "page_content")
+public class PageContentEntity {
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+    @Column(nullable = false)
+    private byte[] body;
+
+    public PageContentEntity(int pageId, byte[] body) {
+        this.pageId = pageId;
+        this.body = body;
+    }
+}
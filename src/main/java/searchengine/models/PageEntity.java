@@ -24,8 +24,12 @@ public class PageEntity {
     private String path;
     @Column(nullable = false)
     private int code;
-    @Column(columnDefinition = "MEDIUMTEXT", nullable = false)
-    private String content;
+    @Column(length = 512)
+    private String etag;
+    @Column(name = "last_modified", length = 64)
+    private String lastModified;
+    @Column(name = "content_hash", length = 64)
+    private String contentHash;
 
     public PageEntity(SiteEntity siteEntity, String path) {
         this.siteEntity = siteEntity;
@@ -0,0 +1,29 @@
+package searchengine.models;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@Table(name = "page_text")
+public class PageTextEntity {
+    @Id
+    @Column(name = "page_id")
+    private int pageId;
+    @Column(nullable = false, length = 1024)
+    private String title;
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String text;
+    @Column(name = "word_offsets", nullable = false)
+    private byte[] wordOffsets;
+
+    public PageTextEntity(String title, String text, byte[] wordOffsets) {
+        this.title = title;
+        this.text = text;
+        this.wordOffsets = wordOffsets;
+    }
+}
@@ -27,6 +27,9 @@ public class SiteEntity {
     private String url;
     @Column(nullable = false)
     private String name;
+    /** Поиск идёт только по активному поколению сайта. */
+    @Column(nullable = false)
+    private boolean active = true;
     @OneToMany(fetch = FetchType.LAZY, cascade = CascadeType.ALL, mappedBy = "siteEntity")
     private List<PageEntity> sitePageEntities = new ArrayList<>();
 
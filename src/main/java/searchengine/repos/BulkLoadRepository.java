@@ -0,0 +1,140 @@
+package searchengine.repos;
+
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import org.hibernate.Session;
+import org.postgresql.PGConnection;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Массовая загрузка индекса через COPY: строки индекса нового поколения сайта
+ * складываются в таблицу без ключей и индексов (search_index_load_{siteId})
+ * бинарным COPY, а в конце обхода одним набором переносятся в lemmas и search_index.
+ * Таблица журналируемая: UNLOGGED-таблицу PostgreSQL очищает при восстановлении после сбоя,
+ * а прерванный обход продолжается с уже загруженными строками.
+ */
+@Repository
+public class BulkLoadRepository {
+    private static final byte[] PGCOPY_SIGNATURE = {'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0};
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Transactional
+    public void createStaging(int siteId) {
+        entityManager.createNativeQuery("CREATE TABLE IF NOT EXISTS " + staging(siteId)
+                + " (page_id INT NOT NULL, lemma TEXT NOT NULL, \"rank\" REAL NOT NULL, positions BYTEA)").executeUpdate();
+        // таблица могла остаться от прерванного обхода прежней версии: без позиций или UNLOGGED
+        entityManager.createNativeQuery("ALTER TABLE " + staging(siteId)
+                + " ADD COLUMN IF NOT EXISTS positions BYTEA").executeUpdate();
+        entityManager.createNativeQuery("ALTER TABLE " + staging(siteId) + " SET LOGGED").executeUpdate();
+    }
+
+    @Transactional(readOnly = true)
+    public boolean hasStaging(int siteId) {
+        Object found = entityManager.createNativeQuery("SELECT to_regclass(:name) IS NOT NULL")
+                .setParameter("name", staging(siteId))
+                .getSingleResult();
+        return Boolean.TRUE.equals(found);
+    }
+
+    /**
+     * Бинарный COPY первых n строк индекса в промежуточную таблицу сайта.
+     */
+    @Transactional
+    public void copyPostings(int siteId, int[] pageIds, String[] lemmas, float[] ranks, byte[][] positions, int n) {
+        byte[] payload = encodeBinaryCopy(pageIds, lemmas, ranks, positions, n);
+        String sql = "COPY " + staging(siteId) + " (page_id, lemma, \"rank\", positions) FROM STDIN (FORMAT BINARY)";
+        entityManager.unwrap(Session.class).doWork(connection -> {
+            try {
+                connection.unwrap(PGConnection.class).getCopyAPI().copyIn(sql, new ByteArrayInputStream(payload));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    /**
+     * Переносит накопленное в основные таблицы: частоты лемм считаются группировкой,
+     * строки индекса вставляются одним INSERT ... SELECT, промежуточная таблица удаляется.
+     * ON CONFLICT нужен только для продолженного обхода, где часть строк уже записана обычным путём;
+     * по той же причине страница может оказаться в таблице дважды — берётся последняя её строка.
+     * Строки страниц, удалённых перед повторной загрузкой, отбрасываются соединением с page.
+     */
+    @Transactional
+    public void mergeStaging(int siteId) {
+        String table = staging(siteId);
+        entityManager.createNativeQuery("ANALYZE " + table).executeUpdate();
+        entityManager.createNativeQuery("""
+                INSERT INTO lemmas(site_id, lemma, frequency)
+                SELECT :siteId, s.lemma, count(DISTINCT s.page_id)
+                FROM %s s
+                JOIN page p ON p.id = s.page_id
+                GROUP BY s.lemma
+                ORDER BY s.lemma
+                ON CONFLICT (site_id, lemma)
+                DO UPDATE SET frequency = lemmas.frequency + EXCLUDED.frequency
+                """.formatted(table))
+                .setParameter("siteId", siteId)
+                .executeUpdate();
+        entityManager.createNativeQuery("""
+                INSERT INTO search_index(page_id, lemma_id, "rank", positions)
+                SELECT DISTINCT ON (s.page_id, l.id) s.page_id, l.id, s."rank", s.positions
+                FROM %s s
+                JOIN page p ON p.id = s.page_id
+                JOIN lemmas l ON l.site_id = :siteId AND l.lemma = s.lemma
+                ORDER BY s.page_id, l.id, s.ctid DESC
+                ON CONFLICT (page_id, lemma_id)
+                DO UPDATE SET "rank" = EXCLUDED."rank", positions = EXCLUDED.positions
+                """.formatted(table))
+                .setParameter("siteId", siteId)
+                .executeUpdate();
+        dropStaging(siteId);
+    }
+
+    @Transactional
+    public void dropStaging(int siteId) {
+        entityManager.createNativeQuery("DROP TABLE IF EXISTS " + staging(siteId)).executeUpdate();
+    }
+
+    private static String staging(int siteId) {
+        return "search_index_load_" + siteId;
+    }
+
+    private static byte[] encodeBinaryCopy(int[] pageIds, String[] lemmas, float[] ranks, byte[][] positions, int n) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32 + n * 32);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.write(PGCOPY_SIGNATURE);
+            out.writeInt(0);
+            out.writeInt(0);
+            for (int i = 0; i < n; i++) {
+                byte[] lemma = lemmas[i].getBytes(StandardCharsets.UTF_8);
+                out.writeShort(4);
+                out.writeInt(4);
+                out.writeInt(pageIds[i]);
+                out.writeInt(lemma.length);
+                out.write(lemma);
+                out.writeInt(4);
+                out.writeFloat(ranks[i]);
+                if (positions[i] == null) {
+                    out.writeInt(-1);
+                } else {
+                    out.writeInt(positions[i].length);
+                    out.write(positions[i]);
+                }
+            }
+            out.writeShort(-1);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,59 @@
+package searchengine.repos;
+
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.models.SiteEntity;
+
+import java.util.List;
+
+/**
+ * Журнал очереди обхода (crawl_frontier). Только собственные запросы: таблица не отображена
+ * в сущность, а привязка к {@link SiteEntity} нужна Spring Data лишь формально.
+ */
+@Repository
+public interface FrontierRepository extends org.springframework.data.repository.Repository<SiteEntity, Integer> {
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+            INSERT INTO crawl_frontier(site_id, path, depth, priority, visited)
+            SELECT :siteId, t.path, t.depth, t.priority, false
+            FROM unnest(CAST(:paths AS text[]),
+                        CAST(:depths AS int[]),
+                        CAST(:priorities AS int[])) AS t(path, depth, priority)
+            ON CONFLICT (site_id, path) DO NOTHING
+            """, nativeQuery = true)
+    void batchInsertPending(@Param("siteId") int siteId,
+                            @Param("paths") String[] paths,
+                            @Param("depths") int[] depths,
+                            @Param("priorities") int[] priorities);
+
+    @Modifying
+    @Transactional
+    @Query(value = """
+            UPDATE crawl_frontier SET visited = true
+            WHERE site_id = :siteId AND path = ANY(CAST(:paths AS text[]))
+            """, nativeQuery = true)
+    void markVisited(@Param("siteId") int siteId, @Param("paths") String[] paths);
+
+    @Query(value = """
+            SELECT path AS path, depth AS depth, priority AS priority, visited AS visited
+            FROM crawl_frontier WHERE site_id = :siteId
+            """, nativeQuery = true)
+    List<FrontierRow> findBySite(@Param("siteId") int siteId);
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM crawl_frontier WHERE site_id = :siteId", nativeQuery = true)
+    void deleteBySite(@Param("siteId") int siteId);
+
+    interface FrontierRow {
+        String getPath();
+        Integer getDepth();
+        Integer getPriority();
+        Boolean getVisited();
+    }
+}
@@ -1,8 +1,11 @@
 package searchengine.repos;
 
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 import searchengine.models.IndexesEntity;
@@ -10,23 +13,90 @@ import searchengine.models.LemmaEntity;
 import searchengine.models.PageEntity;
 
 import java.util.List;
+import java.util.stream.Stream;
 
 @Repository
 public interface IndexesRepository extends JpaRepository<IndexesEntity, Integer> {
     List<IndexesEntity> findByPageEntity(@Param("page") PageEntity page);
     List<IndexesEntity> findByLemmaEntityIn(List<LemmaEntity> lemmas);
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query(value = """
+    SELECT l.site_id AS siteId, l.lemma AS lemma, i.page_id AS pageId, i."rank" AS rank,
+           i.positions AS positions
+    FROM search_index i
+    JOIN lemmas l ON l.id = i.lemma_id
+    ORDER BY i.page_id
+    """, nativeQuery = true)
+    Stream<PostingRow> streamAllPostings();
+
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "5000"))
+    @Query(value = """
+    SELECT l.site_id AS siteId, l.lemma AS lemma, i.page_id AS pageId, i."rank" AS rank,
+           i.positions AS positions
+    FROM search_index i
+    JOIN lemmas l ON l.id = i.lemma_id
+    WHERE l.site_id = :siteId
+    ORDER BY i.page_id
+    """, nativeQuery = true)
+    Stream<PostingRow> streamSitePostings(@Param("siteId") int siteId);
+
     @Modifying(clearAutomatically = true, flushAutomatically = true)
     @org.springframework.transaction.annotation.Transactional
     @Query(value = """
-    INSERT INTO search_index(page_id, lemma_id, "rank")
-    SELECT t.page_id, t.lemma_id, t.rank
-    FROM unnest(CAST(:pageIds AS int[]),
-                CAST(:lemmaIds AS int[]),
-                CAST(:ranks    AS real[])) AS t(page_id, lemma_id, rank)
+    INSERT INTO search_index(page_id, lemma_id, "rank", positions)
+    SELECT t.page_id, t.lemma_id, t.rank, decode(t.positions, 'base64')
+    FROM unnest(CAST(:pageIds   AS int[]),
+                CAST(:lemmaIds  AS int[]),
+                CAST(:ranks     AS real[]),
+                CAST(:positions AS text[])) AS t(page_id, lemma_id, rank, positions)
     ON CONFLICT (page_id, lemma_id)
-    DO UPDATE SET "rank" = EXCLUDED."rank"
+    DO UPDATE SET "rank" = EXCLUDED."rank", positions = EXCLUDED.positions
     """, nativeQuery = true)
     void batchUpsertIndexes(@Param("pageIds") int[] pageIds,
                             @Param("lemmaIds") int[] lemmaIds,
-                            @Param("ranks") float[] ranks);
+                            @Param("ranks") float[] ranks,
+                            @Param("positions") String[] positions);
+
+    /**
+     * Удаляет строки индекса страниц и тем же запросом уменьшает частоты их лемм
+     * на число удалённых страниц с леммой. Возвращает (страница, лемма, новая частота),
+     * по ним снимаются страницы с резидентного индекса и удаляются опустевшие леммы.
+     */
+    @org.springframework.transaction.annotation.Transactional
+    @Query(value = """
+    WITH removed AS (
+        DELETE FROM search_index i
+        WHERE i.page_id = ANY(CAST(:pageIds AS int[]))
+        RETURNING i.page_id, i.lemma_id
+    ), per_lemma AS (
+        SELECT r.lemma_id, count(*) AS n
+        FROM removed r
+        GROUP BY r.lemma_id
+    ), decremented AS (
+        UPDATE lemmas l SET frequency = l.frequency - p.n
+        FROM per_lemma p
+        WHERE l.id = p.lemma_id
+        RETURNING l.id, l.lemma, l.frequency
+    )
+    SELECT r.page_id AS pageId, d.id AS lemmaId, d.lemma AS lemma, d.frequency AS frequency
+    FROM removed r
+    JOIN decremented d ON d.id = r.lemma_id
+    """, nativeQuery = true)
+    List<RemovedPostingRow> deletePostingsOfPages(@Param("pageIds") int[] pageIds);
+
+    interface RemovedPostingRow {
+        Integer getPageId();
+        Integer getLemmaId();
+        String getLemma();
+        Integer getFrequency();
+    }
+
+    interface PostingRow {
+        Integer getSiteId();
+        String getLemma();
+        Integer getPageId();
+        Number getRank();
+        byte[] getPositions();
+    }
 }
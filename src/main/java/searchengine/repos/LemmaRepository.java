@@ -1,8 +1,8 @@
 package searchengine.repos;
 
 import org.springframework.data.jpa.repository.JpaRepository;
-
 import org.springframework.data.jpa.repository.Modifying;
+
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -21,19 +21,41 @@ public interface LemmaRepository extends JpaRepository<LemmaEntity, Integer> {
     @Query("SELECT l FROM LemmaEntity l WHERE l.lemma = :lemma AND l.siteEntity.id = :siteId")
     List<LemmaEntity> findByLemmaIn(@Param("lemmas") String lemma, @Param("siteId") int siteId);
 
-    @Modifying(clearAutomatically = true, flushAutomatically = true)
     @org.springframework.transaction.annotation.Transactional
     @Query(value = """
             INSERT INTO lemmas(site_id, lemma, frequency)
-            SELECT :siteId, x.lemma, 1
-            FROM (
-              SELECT DISTINCT t.lemma
-              FROM unnest(CAST(:lemmasstr AS text[])) AS t(lemma)
-            ) x
-            ORDER BY x.lemma
+            SELECT :siteId, t.lemma, t.n
+            FROM unnest(CAST(:lemmasstr AS text[]), CAST(:increments AS int[])) AS t(lemma, n)
+            ORDER BY t.lemma
             ON CONFLICT (site_id, lemma)
-            DO UPDATE SET frequency = lemmas.frequency + 1
+            DO UPDATE SET frequency = lemmas.frequency + EXCLUDED.frequency
+            RETURNING id, lemma
             """, nativeQuery = true)
-    void batchUpsertIncrement(@Param("siteId") int siteId,
-                              @Param("lemmasstr") String[] lemmas);
+    List<LemmaIdRow> batchUpsertAdd(@Param("siteId") int siteId,
+                                    @Param("lemmasstr") String[] lemmas,
+                                    @Param("increments") int[] increments);
+
+    @org.springframework.transaction.annotation.Transactional
+    @Query(value = """
+            UPDATE lemmas l SET frequency = l.frequency + t.n
+            FROM unnest(CAST(:ids AS int[]), CAST(:increments AS int[])) AS t(id, n)
+            WHERE l.id = t.id
+            RETURNING l.id
+            """, nativeQuery = true)
+    List<Integer> batchIncrementByIds(@Param("ids") int[] ids,
+                                      @Param("increments") int[] increments);
+
+    /**
+     * Удаляет леммы, частота которых опустилась до нуля. Условие на частоту повторяется,
+     * чтобы не удалить лемму, которую параллельная запись успела снова увеличить.
+     */
+    @Modifying
+    @org.springframework.transaction.annotation.Transactional
+    @Query(value = "DELETE FROM lemmas WHERE id = ANY(CAST(:ids AS int[])) AND frequency <= 0", nativeQuery = true)
+    int deleteEmptyLemmas(@Param("ids") int[] ids);
+
+    interface LemmaIdRow {
+        Integer getId();
+        String getLemma();
+    }
 }
@@ -0,0 +1,9 @@
+package searchengine.repos;
+
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+import searchengine.models.PageContentEntity;
+
+@Repository
+public interface PageContentRepository extends JpaRepository<PageContentEntity, Integer> {
+}
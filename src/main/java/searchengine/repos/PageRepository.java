@@ -1,11 +1,15 @@
 package searchengine.repos;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.models.PageEntity;
 import searchengine.models.SiteEntity;
 
+import java.util.Collection;
 import java.util.List;
 
 @Repository
@@ -20,5 +24,16 @@ public interface PageRepository extends JpaRepository<PageEntity, Integer> {
     PageEntity findByPathAndSiteEntity(String path, SiteEntity siteEntity);
 
     long countBySiteEntity(SiteEntity siteEntity);
-}
 
+    List<PageEntity> findAllBySiteEntityAndPathIn(SiteEntity siteEntity, Collection<String> paths);
+
+    /**
+     * Удаляет порцию страниц сайта вместе с их индексом, текстом и телом (каскад FK).
+     * @return число удалённых страниц, 0 — страниц не осталось
+     */
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM page WHERE id IN (SELECT id FROM page WHERE site_entity_id = :siteId LIMIT :limit)",
+            nativeQuery = true)
+    int deletePageChunk(@Param("siteId") int siteId, @Param("limit") int limit);
+}
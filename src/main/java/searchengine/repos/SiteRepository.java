@@ -1,14 +1,38 @@
 package searchengine.repos;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 import searchengine.models.SiteEntity;
 import searchengine.models.SiteStatusType;
 
+import java.util.List;
 import java.util.Optional;
 
+/**
+ * У одного url может быть несколько строк — поколений индекса; для поиска
+ * берётся активная, для статуса обхода — последняя созданная.
+ */
 @Repository
 public interface SiteRepository extends JpaRepository<SiteEntity, Integer> {
-    Optional<SiteEntity> findByUrl(final String url);
+    @Query("SELECT s FROM SiteEntity s WHERE s.url = :url AND s.active = true")
+    Optional<SiteEntity> findActiveByUrl(@Param("url") String url);
+
+    Optional<SiteEntity> findFirstByUrlOrderByIdDesc(String url);
+
+    List<SiteEntity> findAllByActiveTrue();
+
+    List<SiteEntity> findByUrlAndIdNot(String url, int id);
+
+    List<SiteEntity> findByUrlAndActiveFalse(String url);
+
     boolean existsByStatus(SiteStatusType status);
-}
\ No newline at end of file
+
+    @Modifying
+    @Transactional
+    @Query(value = "DELETE FROM sites WHERE id = :siteId", nativeQuery = true)
+    void deleteSiteById(@Param("siteId") int siteId);
+}
@@ -1,11 +1,11 @@
 package searchengine.services;
 
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.stereotype.Service;
-import searchengine.config.SitesList;
+import searchengine.enums.IndexingMode;
 
 public interface IndexingService {
     boolean startIndexing();
 
+    boolean startIndexing(IndexingMode mode);
+
     boolean stopIndexing();
 }
@@ -41,7 +41,7 @@ public class StatisticsServiceImpl implements StatisticsService {
         List<DetailedStatisticsItem> detailed = new ArrayList<>();
 
         for (Site site : sites.getSites()) {
-            SiteEntity siteEntity = siteRepo.findByUrl(site.getUrl()).orElse(null);
+            SiteEntity siteEntity = siteRepo.findFirstByUrlOrderByIdDesc(site.getUrl()).orElse(null);
 
             if (siteEntity != null) {
                 pages = Math.toIntExact(pageRepo.countBySiteEntity(siteEntity));
@@ -3,13 +3,16 @@ package searchengine.services.impl.indexing;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Service;
+import searchengine.config.CrawlerSettings;
 import searchengine.config.Site;
 import searchengine.config.SitesList;
+import searchengine.enums.IndexingMode;
 import searchengine.models.SiteEntity;
 import searchengine.models.SiteStatusType;
 import searchengine.repos.SiteRepository;
 import searchengine.services.IndexingService;
 import searchengine.services.impl.scraper.ActiveTasks;
+import searchengine.services.impl.scraper.IndexingPipeline;
 import searchengine.services.impl.scraper.SiteIndexingImpl;
 import searchengine.services.impl.scraper.ScrapTask;
 
@@ -27,34 +30,59 @@ public class IndexingServiceImpl implements IndexingService {
     private final SiteRepository siteRepo;
     private final SiteIndexingImpl siteIndexingImpl;
     private final SiteIndexingHelper siteIndexingHelper;
-    private ForkJoinPool sharedPool;
+    private final CrawlerSettings crawlerSettings;
+    private final IndexingPipeline indexingPipeline;
+    private final SiteGenerations siteGenerations;
+    private final ExecutorService reindexPool;
+    private ExecutorService sharedPool;
     private final ActiveTasks activeTaskCount = new ActiveTasks();
     private final GatesConfig gatesConfig;
     private final Executor launcher = Executors.newCachedThreadPool();
+    private final List<ScrapTask> runningTasks = new CopyOnWriteArrayList<>();
 
 
     @Override
     public boolean startIndexing() {
+        return startIndexing(IndexingMode.FULL);
+    }
+
+    @Override
+    public boolean startIndexing(IndexingMode mode) {
         if (!siteIndexingHelper.isIndexingInProgress()) {
 
             if (sharedPool == null || sharedPool.isShutdown() || sharedPool.isTerminated()) {
-                sharedPool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
-                log.info("Created new shared ForkJoinPool");
+                sharedPool = Executors.newFixedThreadPool(crawlerSettings.getCrawlThreads());
+                log.info("Created new shared crawl pool with {} threads", crawlerSettings.getCrawlThreads());
             }
 
-            log.info("Starting indexing process.");
-            List<SiteEntity> entities = updateOrCreateSiteEntities(sites.getSites());
+            log.info("Starting indexing process in {} mode.", mode);
+            List<SiteEntity> entities = updateOrCreateSiteEntities(sites.getSites(), mode);
+            if (entities.isEmpty()) {
+                log.info("Nothing to index: all sites are already indexed.");
+                return true;
+            }
 
+            runningTasks.clear();
             for (SiteEntity siteEntity : entities) {
-                ScrapTask task = siteIndexingHelper.prepareIndexingTask(siteEntity, activeTaskCount);
+                ScrapTask task;
+                try {
+                    task = siteIndexingHelper.prepareIndexingTask(siteEntity, activeTaskCount, sharedPool, mode);
+                } catch (IllegalArgumentException e) {
+                    log.error("Bad URL of site {}: {}", siteEntity.getName(), e.getMessage());
+                    siteGenerations.fail(siteEntity, "Некорректный адрес сайта: " + siteEntity.getUrl());
+                    continue;
+                }
+                runningTasks.add(task);
 
                 CompletableFuture.runAsync(() -> {
                     try {
                         log.info("Invoking root for site {}", siteEntity.getName());
-                        sharedPool.invoke(task);
+                        task.run();
                         log.info("Root finished for site {}", siteEntity.getName());
                     } catch (Throwable t) {
                         log.error("Root crashed for site {}: {}", siteEntity.getName(), t.getMessage(), t);
+                    } finally {
+                        runningTasks.remove(task);
                     }
                 }, launcher);
             }
@@ -73,8 +101,9 @@ public class IndexingServiceImpl implements IndexingService {
         if (siteIndexingHelper.isIndexingInProgress()) {
             log.info("Stopping shared pool...");
 
-            sharedPool.shutdownNow();
             gatesConfig.indexingGate().stop();
+            runningTasks.forEach(ScrapTask::cancel);
+            sharedPool.shutdownNow();
 
             log.info("Waiting for all tasks to finish...");
             try {
@@ -84,27 +113,31 @@ public class IndexingServiceImpl implements IndexingService {
             }
 
             log.info("All tasks reported finished or timeout reached");
+            indexingPipeline.flushAll();
 
             return true;
         }
         return false;
     }
 
-    private List<SiteEntity> updateOrCreateSiteEntities(List<Site> sitesList) {
-        log.info("Clearing database before indexing...");
-        siteIndexingHelper.clearDatabase();
-
-        return siteIndexingHelper.createSites(sitesList);
+    private List<SiteEntity> updateOrCreateSiteEntities(List<Site> sitesList, IndexingMode mode) {
+        if (mode == IndexingMode.RESUME) {
+            log.info("Resuming indexing from the saved crawl frontier...");
+            return siteIndexingHelper.findOrCreateSitesToResume(sitesList);
+        }
+        if (mode == IndexingMode.INCREMENTAL) {
+            log.info("Revalidating already indexed pages...");
+            return siteIndexingHelper.findOrCreateSites(sitesList);
+        }
+        log.info("Indexing into new index generations, search stays on the current ones...");
+        return siteGenerations.createGenerations(sitesList);
     }
 
     public Map<String, Object> handlePageUpdate(String urlStr) {
-        String finalUrlString = urlStr.trim().toLowerCase().replaceAll("www.", "");
         Map<String, Object> response = new HashMap<>();
         try {
-            URL url = new URL(finalUrlString);
-            Optional<Site> matchingSite = sites.getSites().stream()
-                    .filter(site -> finalUrlString.contains(site.getUrl()))
-                    .findFirst();
+            URL url = new URL(urlStr.trim());
+            Optional<Site> matchingSite = findConfiguredSite(urlStr);
 
             if (matchingSite.isEmpty()) {
                 String error = "This page is located on additional sites specified in the configuration file.";
@@ -115,7 +148,7 @@ public class IndexingServiceImpl implements IndexingService {
             }
 
             Site siteConfig = matchingSite.get();
-            SiteEntity siteEntity = siteRepo.findByUrl(siteConfig.getUrl())
+            SiteEntity siteEntity = siteRepo.findActiveByUrl(siteConfig.getUrl())
                     .orElseGet(() -> {
                         SiteEntity newSite = new SiteEntity(siteConfig.getUrl(), siteConfig.getName(), SiteStatusType.INDEXING);
                         siteRepo.save(newSite);
@@ -141,4 +174,64 @@ public class IndexingServiceImpl implements IndexingService {
 
         return response;
     }
+
+    /**
+     * Переиндексация списка страниц: адреса группируются по сайтам из конфигурации,
+     * каждый сайт обрабатывается пакетами в общем пуле переиндексации на reindex-threads потоков.
+     * Адреса вне конфигурации и неудавшиеся страницы возвращаются в errors.
+     */
+    public Map<String, Object> handlePagesUpdate(List<String> urls) {
+        Map<String, String> errors = new LinkedHashMap<>();
+        Map<Site, List<String>> pathsBySite = new LinkedHashMap<>();
+        for (String urlStr : urls) {
+            try {
+                URL url = new URL(urlStr.trim());
+                Optional<Site> matchingSite = findConfiguredSite(urlStr);
+                if (matchingSite.isEmpty()) {
+                    errors.put(urlStr, "This page is located on additional sites specified in the configuration file.");
+                    continue;
+                }
+                pathsBySite.computeIfAbsent(matchingSite.get(), site -> new ArrayList<>()).add(url.getPath());
+            } catch (MalformedURLException e) {
+                errors.put(urlStr, "Wrong URL format");
+            }
+        }
+
+        int indexed = 0;
+        for (Map.Entry<Site, List<String>> entry : pathsBySite.entrySet()) {
+            Site siteConfig = entry.getKey();
+            List<String> paths = entry.getValue().stream().distinct().toList();
+            SiteEntity siteEntity = siteRepo.findActiveByUrl(siteConfig.getUrl())
+                    .orElseGet(() -> siteRepo.save(
+                            new SiteEntity(siteConfig.getUrl(), siteConfig.getName(), SiteStatusType.INDEXING)));
+            siteEntity.setStatusTime(LocalDateTime.now());
+            siteRepo.save(siteEntity);
+
+            log.info("Reindexing {} pages of '{}'", paths.size(), siteConfig.getUrl());
+            List<String> failed = siteIndexingImpl.reindexPages(
+                    paths, siteEntity, reindexPool, crawlerSettings.getReindexBatchSize());
+            indexed += paths.size() - failed.size();
+            failed.forEach(path -> errors.put(siteConfig.getUrl() + path, "Error processing page"));
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("result", indexed > 0 || errors.isEmpty());
+        response.put("indexed", indexed);
+        response.put("errors", errors);
+        return response;
+    }
+
+    /**
+     * Сайт из конфигурации, которому принадлежит адрес; регистр и "www." не учитываются.
+     */
+    private Optional<Site> findConfiguredSite(String url) {
+        String normalized = withoutWww(url);
+        return sites.getSites().stream()
+                .filter(site -> normalized.startsWith(withoutWww(site.getUrl())))
+                .findFirst();
+    }
+
+    private static String withoutWww(String url) {
+        return url.trim().toLowerCase(Locale.ROOT).replace("://www.", "://");
+    }
 }
@@ -0,0 +1,26 @@
+package searchengine.services.impl.indexing;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import searchengine.config.CrawlerSettings;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ReindexPoolConfig {
+
+    /**
+     * Общий пул переиндексации страниц по запросу: reindex-threads потоков на все запросы.
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService reindexPool(CrawlerSettings crawlerSettings) {
+        AtomicInteger counter = new AtomicInteger();
+        return Executors.newFixedThreadPool(crawlerSettings.getReindexThreads(), r -> {
+            Thread thread = new Thread(r, "reindex-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
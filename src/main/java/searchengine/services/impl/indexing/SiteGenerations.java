@@ -0,0 +1,210 @@
+package searchengine.services.impl.indexing;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import searchengine.config.Site;
+import searchengine.models.PageEntity;
+import searchengine.models.SiteEntity;
+import searchengine.models.SiteStatusType;
+import searchengine.repos.BulkLoadRepository;
+import searchengine.repos.PageRepository;
+import searchengine.repos.SiteRepository;
+import searchengine.services.impl.invertedIndex.InvertedIndex;
+import searchengine.services.impl.scraper.IndexBatchWriter;
+import searchengine.services.impl.scraper.LemmaDictionary;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
+
+/**
+ * Поколения индекса сайта (blue/green). Каждый полный обход пишет в новое поколение —
+ * отдельную неактивную строку sites со своими страницами, леммами и индексом; поиск
+ * продолжает работать по активной строке того же url, пока корневая задача обхода
+ * не завершится успешно и {@link #activate} не переключит поколения в одной транзакции.
+ * Вытесненные поколения удаляются в фоне порциями, не блокируя ни обход, ни поиск.
+ */
+@Log4j2
+@Service
+public class SiteGenerations {
+    private static final int DELETE_CHUNK = 2000;
+
+    private final SiteRepository siteRepo;
+    private final PageRepository pageRepo;
+    private final BulkLoadRepository bulkLoadRepository;
+    private final IndexBatchWriter indexBatchWriter;
+    private final InvertedIndex invertedIndex;
+    private final LemmaDictionary lemmaDictionary;
+    private final ExecutorService collector = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "generation-gc");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SiteGenerations(SiteRepository siteRepo, PageRepository pageRepo, BulkLoadRepository bulkLoadRepository,
+                           IndexBatchWriter indexBatchWriter, InvertedIndex invertedIndex,
+                           LemmaDictionary lemmaDictionary) {
+        this.siteRepo = siteRepo;
+        this.pageRepo = pageRepo;
+        this.bulkLoadRepository = bulkLoadRepository;
+        this.indexBatchWriter = indexBatchWriter;
+        this.invertedIndex = invertedIndex;
+        this.lemmaDictionary = lemmaDictionary;
+    }
+
+    /**
+     * Создаёт неактивные поколения сайтов; брошенные незавершённые поколения
+     * помечаются FAILED и уходят в фоновое удаление.
+     */
+    public List<SiteEntity> createGenerations(List<Site> sitesList) {
+        List<SiteEntity> entities = new ArrayList<>();
+        for (Site site : sitesList) {
+            List<Integer> abandoned = new ArrayList<>();
+            for (SiteEntity generation : siteRepo.findByUrlAndActiveFalse(site.getUrl())) {
+                generation.setStatus(SiteStatusType.FAILED);
+                siteRepo.save(generation);
+                abandoned.add(generation.getId());
+            }
+            retire(abandoned);
+            SiteEntity entity = new SiteEntity(site.getUrl(), site.getName(), SiteStatusType.INDEXING);
+            entity.setActive(false);
+            entities.add(siteRepo.save(entity));
+        }
+        return entities;
+    }
+
+    /**
+     * Причина, по которой поколение нельзя активировать, или null: корень сайта
+     * должен загрузиться успешно, а страниц должно быть больше нуля.
+     *
+     * @param rootStatus код ответа корня в этом обходе, 0 — корень не загружался (продолжение)
+     */
+    public String incompleteReason(SiteEntity site, int rootStatus) {
+        if (rootStatus == 0) {
+            PageEntity root = pageRepo.findByPathAndSiteEntity("", site);
+            rootStatus = root == null ? 0 : root.getCode();
+        }
+        if (rootStatus != 200 && rootStatus != 304) {
+            return rootStatus == 0 ? "Главная страница сайта не загружена"
+                    : "Главная страница сайта недоступна, код ответа " + rootStatus;
+        }
+        if (pageRepo.countBySiteEntity(site) == 0) {
+            return "Не сохранено ни одной страницы сайта";
+        }
+        return null;
+    }
+
+    /**
+     * Помечает поколение FAILED; активное поколение того же url остаётся активным.
+     */
+    public void fail(SiteEntity site, String error) {
+        site.setStatus(SiteStatusType.FAILED);
+        site.setStatusTime(LocalDateTime.now());
+        site.setLastError(error);
+        siteRepo.save(site);
+    }
+
+    /**
+     * Переносит загруженное COPY в основные таблицы, делает поколение активным
+     * и снимает активность с прежнего; прежнее удаляется в фоне после коммита.
+     * После переноса индекс сайта в памяти перечитывается из базы: строки, загруженные
+     * до перезапуска приложения, есть только там.
+     * Ошибка дописывания пакета или переноса пробрасывается, и переключение откатывается целиком.
+     */
+    @Transactional
+    public void activate(SiteEntity site) {
+        indexBatchWriter.finishBulkLoad(site.getId());
+        if (bulkLoadRepository.hasStaging(site.getId())) {
+            bulkLoadRepository.mergeStaging(site.getId());
+            afterCommit(() -> invertedIndex.reloadSite(site.getId()));
+        }
+        List<Integer> replaced = new ArrayList<>();
+        for (SiteEntity other : siteRepo.findByUrlAndIdNot(site.getUrl(), site.getId())) {
+            if (other.isActive()) {
+                other.setActive(false);
+                siteRepo.save(other);
+                replaced.add(other.getId());
+            }
+        }
+        site.setActive(true);
+        site.setStatus(SiteStatusType.INDEXED);
+        site.setStatusTime(LocalDateTime.now());
+        siteRepo.save(site);
+        if (replaced.isEmpty()) return;
+
+        log.info("Site {} switched to generation {}, replaced {}", site.getUrl(), site.getId(), replaced);
+        afterCommit(() -> retire(replaced));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    /**
+     * Добирает поколения, оставшиеся после перезапуска: неактивные строки старше
+     * активной строки того же url. Более новые неактивные не трогаем — их можно продолжить.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void collectSuperseded() {
+        Map<String, List<SiteEntity>> byUrl = siteRepo.findAll().stream()
+                .collect(Collectors.groupingBy(SiteEntity::getUrl));
+        List<Integer> garbage = new ArrayList<>();
+        for (List<SiteEntity> generations : byUrl.values()) {
+            generations.stream().filter(SiteEntity::isActive).max(Comparator.comparingInt(SiteEntity::getId))
+                    .ifPresent(active -> generations.stream()
+                            .filter(g -> !g.isActive() && g.getId() < active.getId())
+                            .forEach(g -> garbage.add(g.getId())));
+        }
+        retire(garbage);
+    }
+
+    private void retire(List<Integer> siteIds) {
+        for (int siteId : siteIds) {
+            invertedIndex.removeSite(siteId);
+            lemmaDictionary.removeSite(siteId);
+            collector.execute(() -> dropGeneration(siteId));
+        }
+    }
+
+    private void dropGeneration(int siteId) {
+        try {
+            long started = System.currentTimeMillis();
+            bulkLoadRepository.dropStaging(siteId);
+            int pages = 0;
+            int deleted;
+            while ((deleted = pageRepo.deletePageChunk(siteId, DELETE_CHUNK)) > 0) {
+                pages += deleted;
+            }
+            siteRepo.deleteSiteById(siteId);
+            log.info("Index generation {} dropped: {} pages in {} ms",
+                    siteId, pages, System.currentTimeMillis() - started);
+        } catch (Exception e) {
+            log.error("Failed to drop index generation {}", siteId, e);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        collector.shutdownNow();
+    }
+}
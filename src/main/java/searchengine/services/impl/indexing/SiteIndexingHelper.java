@@ -1,65 +1,128 @@
 package searchengine.services.impl.indexing;
 
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import searchengine.config.CrawlerSettings;
 import searchengine.config.Site;
+import searchengine.enums.IndexingMode;
 import searchengine.models.SiteEntity;
 import searchengine.models.SiteStatusType;
-import searchengine.repos.DbCleanerRepository;
-import searchengine.repos.PageRepository;
+import searchengine.repos.BulkLoadRepository;
+import searchengine.repos.FrontierRepository;
 import searchengine.repos.SiteRepository;
 import searchengine.services.impl.scraper.ActiveTasks;
+import searchengine.services.impl.scraper.CrawlFrontier;
+import searchengine.services.impl.scraper.CrawlStats;
+import searchengine.services.impl.scraper.FrontierCheckpoint;
+import searchengine.services.impl.scraper.HtmlParser;
+import searchengine.services.impl.scraper.IndexBatchWriter;
+import searchengine.services.impl.scraper.IndexingPipeline;
 import searchengine.services.impl.scraper.ScrapTask;
 import searchengine.services.impl.scraper.SiteIndexingImpl;
+import searchengine.services.impl.scraper.SiteSeeder;
 
 import java.time.LocalDateTime;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
 
+@Log4j2
 @Service
 @RequiredArgsConstructor
 public class SiteIndexingHelper {
-    private final PageRepository pageRepo;
     private final SiteRepository siteRepo;
     private final SiteIndexingImpl siteIndexingImpl;
-    private final DbCleanerRepository dbCleaner;
+    private final FrontierRepository frontierRepo;
     private final GatesConfig gatesConfig;
+    private final MeterRegistry meterRegistry;
+    private final CrawlerSettings crawlerSettings;
+    private final IndexingPipeline indexingPipeline;
+    private final SiteGenerations siteGenerations;
+    private final IndexBatchWriter indexBatchWriter;
+    private final BulkLoadRepository bulkLoadRepository;
+    private final SiteSeeder siteSeeder;
 
+    /**
+     * Для продолжения обхода: сайты, не дошедшие до INDEXED, берутся как есть,
+     * отсутствующие в базе создаются заново. Уже проиндексированные не трогаем.
+     */
     @Transactional
-    public void clearDatabase() {
-        dbCleaner.truncateAll();
+    public List<SiteEntity> findOrCreateSitesToResume(List<Site> sitesList) {
+        List<SiteEntity> entities = new ArrayList<>();
+        for (Site site : sitesList) {
+            SiteEntity entity = siteRepo.findFirstByUrlOrderByIdDesc(site.getUrl()).orElse(null);
+            if (entity == null) {
+                entity = new SiteEntity(site.getUrl(), site.getName(), SiteStatusType.INDEXING);
+                siteRepo.save(entity);
+            } else if (entity.getStatus() == SiteStatusType.INDEXED) {
+                continue;
+            }
+            entities.add(entity);
+        }
+        return entities;
     }
 
+    /**
+     * Для инкрементального обхода: все сайты из конфигурации, данные не удаляются,
+     * страницы перепроверяются условными запросами.
+     */
     @Transactional
-    public List<SiteEntity> createSites(List<Site> sitesList) {
-        List<SiteEntity> newEntities = new ArrayList<>();
-        sitesList.forEach(site -> {
-            SiteEntity entity = new SiteEntity(site.getUrl(), site.getName(), SiteStatusType.INDEXING);
-            siteRepo.save(entity);
-            newEntities.add(entity);
-        });
-
-        return newEntities;
+    public List<SiteEntity> findOrCreateSites(List<Site> sitesList) {
+        List<SiteEntity> entities = new ArrayList<>();
+        for (Site site : sitesList) {
+            entities.add(siteRepo.findActiveByUrl(site.getUrl()).orElseGet(() ->
+                    siteRepo.save(new SiteEntity(site.getUrl(), site.getName(), SiteStatusType.INDEXING))));
+        }
+        return entities;
     }
 
+    /**
+     * @throws IllegalArgumentException если адрес сайта не разбирается как URL; сайт не трогается
+     */
     @Transactional
-    public ScrapTask prepareIndexingTask(SiteEntity site, ActiveTasks activeTaskCount) {
+    public ScrapTask prepareIndexingTask(SiteEntity site, ActiveTasks activeTaskCount,
+                                         ExecutorService crawlPool, IndexingMode mode) {
+        HtmlParser htmlParser = new HtmlParser(site);
         site.setStatusTime(LocalDateTime.now());
         site.setStatus(SiteStatusType.INDEXING);
+        site.setLastError(null);
         siteRepo.save(site);
+
+        FrontierCheckpoint checkpoint = new FrontierCheckpoint(
+                frontierRepo, site.getId(), crawlerSettings.getCheckpointBatchSize());
+        CrawlFrontier frontier = new CrawlFrontier(
+                crawlerSettings.getMaxDepth(), crawlerSettings.getMaxPagesPerSite(), checkpoint);
+        if (mode == IndexingMode.RESUME && checkpoint.restore(frontier) == 0) {
+            // продолжать нечего: журнал пуст или весь посещён — обходим сайт заново
+            log.info("Nothing to resume for site {}, starting a full crawl", site.getUrl());
+            checkpoint.clear();
+            frontier = new CrawlFrontier(
+                    crawlerSettings.getMaxDepth(), crawlerSettings.getMaxPagesPerSite(), checkpoint);
+        } else if (mode == IndexingMode.INCREMENTAL) {
+            checkpoint.clear();
+        }
+        if (mode == IndexingMode.BULK
+                || (mode == IndexingMode.RESUME && bulkLoadRepository.hasStaging(site.getId()))) {
+            indexBatchWriter.startBulkLoad(site.getId());
+        }
         return new ScrapTask(
                 siteRepo,
-                pageRepo,
                 site,
                 siteIndexingImpl,
-                "",
-                true,
-                ConcurrentHashMap.newKeySet(),
-                new ConcurrentHashMap<>(),
+                frontier,
+                crawlPool,
+                crawlerSettings.getWorkersPerSite(),
                 activeTaskCount,
-                gatesConfig
+                gatesConfig,
+                new CrawlStats(site.getName(), meterRegistry),
+                mode,
+                indexingPipeline,
+                siteGenerations,
+                siteSeeder,
+                htmlParser
         );
     }
 
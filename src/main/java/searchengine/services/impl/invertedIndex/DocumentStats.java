@@ -0,0 +1,82 @@
+package searchengine.services.impl.invertedIndex;
+
+/**
+ * Статистика корпуса сайта: число проиндексированных страниц, их суммарная длина
+ * (сумма частот лемм) и длина каждой страницы. Длины лежат в массиве со смещением
+ * base = наименьший id страницы сайта, чтобы массив не рос на id чужих сайтов.
+ * Запись под монитором, чтение без блокировок.
+ */
+public final class DocumentStats {
+    private volatile Table table = new Table(0, new int[0]);
+    private volatile int docCount;
+    private volatile long totalLength;
+
+    private record Table(int base, int[] lengths) {
+    }
+
+    public int docCount() {
+        return docCount;
+    }
+
+    public long totalLength() {
+        return totalLength;
+    }
+
+    public double averageLength() {
+        int count = docCount;
+        return count == 0 ? 0d : (double) totalLength / count;
+    }
+
+    /**
+     * Длина страницы или 0, если страница сайту не принадлежит.
+     */
+    public int length(int pageId) {
+        Table t = table;
+        int slot = pageId - t.base();
+        return slot >= 0 && slot < t.lengths().length ? t.lengths()[slot] : 0;
+    }
+
+    /**
+     * Прибавляет к длине страницы частоту ещё одной леммы;
+     * первая лемма страницы увеличивает число документов.
+     */
+    synchronized void accumulate(int pageId, int count) {
+        if (count <= 0) return;
+        Table t = ensure(pageId);
+        int slot = pageId - t.base();
+        if (t.lengths()[slot] == 0) docCount++;
+        t.lengths()[slot] += count;
+        totalLength += count;
+    }
+
+    synchronized void remove(int pageId) {
+        Table t = table;
+        int slot = pageId - t.base();
+        if (slot < 0 || slot >= t.lengths().length || t.lengths()[slot] == 0) return;
+        totalLength -= t.lengths()[slot];
+        t.lengths()[slot] = 0;
+        docCount--;
+    }
+
+    private Table ensure(int pageId) {
+        Table t = table;
+        int[] lengths = t.lengths();
+        if (lengths.length == 0) {
+            t = new Table(pageId, new int[16]);
+        } else if (pageId < t.base()) {
+            int shift = t.base() - pageId;
+            int[] grown = new int[Math.max(lengths.length + shift, lengths.length + (lengths.length >> 1))];
+            System.arraycopy(lengths, 0, grown, shift, lengths.length);
+            t = new Table(pageId, grown);
+        } else if (pageId - t.base() >= lengths.length) {
+            int needed = pageId - t.base() + 1;
+            int[] grown = new int[Math.max(needed, lengths.length + (lengths.length >> 1))];
+            System.arraycopy(lengths, 0, grown, 0, lengths.length);
+            t = new Table(t.base(), grown);
+        } else {
+            return t;
+        }
+        table = t;
+        return t;
+    }
+}
@@ -0,0 +1,92 @@
+package searchengine.services.impl.invertedIndex;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.repos.IndexesRepository;
+import searchengine.services.impl.textWorkers.LemmaCounts;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * Резидентный инвертированный индекс по сайтам. Строится из search_index/lemmas
+ * при старте и поддерживается в актуальном состоянии при индексации страниц,
+ * поэтому поиск не обращается к Hibernate за пересечением и ранжированием.
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class InvertedIndex {
+    private final IndexesRepository indexesRepository;
+    private final Map<Integer, SiteIndex> sites = new ConcurrentHashMap<>();
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void load() {
+        long started = System.currentTimeMillis();
+        sites.clear();
+        long count = 0;
+        try (Stream<IndexesRepository.PostingRow> rows = indexesRepository.streamAllPostings()) {
+            for (IndexesRepository.PostingRow row : (Iterable<IndexesRepository.PostingRow>) rows::iterator) {
+                site(row.getSiteId()).add(row.getLemma(), row.getPageId(), row.getRank().floatValue(), row.getPositions());
+                count++;
+            }
+        }
+        log.info("Inverted index loaded: {} postings for {} sites in {} ms",
+                count, sites.size(), System.currentTimeMillis() - started);
+    }
+
+    /**
+     * Перестраивает индекс сайта из search_index и подменяет прежний целиком, например
+     * после переноса массовой загрузки, часть которой записал предыдущий запуск приложения.
+     */
+    @Transactional(readOnly = true, propagation = Propagation.REQUIRES_NEW)
+    public void reloadSite(int siteId) {
+        long started = System.currentTimeMillis();
+        SiteIndex siteIndex = new SiteIndex(siteId);
+        long count = 0;
+        try (Stream<IndexesRepository.PostingRow> rows = indexesRepository.streamSitePostings(siteId)) {
+            for (IndexesRepository.PostingRow row : (Iterable<IndexesRepository.PostingRow>) rows::iterator) {
+                siteIndex.add(row.getLemma(), row.getPageId(), row.getRank().floatValue(), row.getPositions());
+                count++;
+            }
+        }
+        sites.put(siteId, siteIndex);
+        log.info("Inverted index of site {} reloaded: {} postings in {} ms",
+                siteId, count, System.currentTimeMillis() - started);
+    }
+
+    public SiteIndex getSite(int siteId) {
+        return sites.get(siteId);
+    }
+
+    public void addPage(int siteId, int pageId, LemmaCounts lemmaCounts) {
+        site(siteId).addPage(pageId, lemmaCounts);
+    }
+
+    public void removePage(int siteId, int pageId, Collection<String> lemmas) {
+        SiteIndex siteIndex = sites.get(siteId);
+        if (siteIndex != null) {
+            siteIndex.removePage(pageId, lemmas);
+        }
+    }
+
+    public void removeSite(int siteId) {
+        sites.remove(siteId);
+    }
+
+    public void clear() {
+        sites.clear();
+    }
+
+    private SiteIndex site(int siteId) {
+        return sites.computeIfAbsent(siteId, SiteIndex::new);
+    }
+}
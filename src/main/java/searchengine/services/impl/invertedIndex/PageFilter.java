@@ -0,0 +1,9 @@
+package searchengine.services.impl.invertedIndex;
+
+/**
+ * Условие на страницу, найденную пересечением; курсоры стоят на pageId.
+ */
+@FunctionalInterface
+public interface PageFilter {
+    boolean accept(int pageId, PostingsCursor[] cursors);
+}
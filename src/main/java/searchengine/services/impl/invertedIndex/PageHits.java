@@ -0,0 +1,12 @@
+package searchengine.services.impl.invertedIndex;
+
+/**
+ * Результат пересечения списков: id страниц и накопленные ранги в параллельных массивах.
+ */
+public record PageHits(int[] pageIds, float[] scores, int size) {
+    public static final PageHits EMPTY = new PageHits(new int[0], new float[0], 0);
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+}
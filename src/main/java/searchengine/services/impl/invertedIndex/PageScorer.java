@@ -0,0 +1,18 @@
+package searchengine.services.impl.invertedIndex;
+
+/**
+ * Оценка страницы, найденной пересечением. Курсоры стоят на pageId
+ * в том же порядке, в каком списки переданы в {@link PostingsIntersector}.
+ */
+@FunctionalInterface
+public interface PageScorer {
+    PageScorer RANK_SUM = (pageId, cursors) -> {
+        float score = 0f;
+        for (PostingsCursor cursor : cursors) {
+            score += cursor.rank();
+        }
+        return score;
+    };
+
+    float score(int pageId, PostingsCursor[] cursors);
+}
@@ -0,0 +1,66 @@
+package searchengine.services.impl.invertedIndex;
+
+import java.util.Arrays;
+
+/**
+ * Проверки по позициям слов страницы, на которой стоят курсоры пересечения.
+ * Если у страницы нет позиций, проверки её не отбрасывают.
+ */
+public final class PositionMatcher {
+    public static final int NO_SPAN = -1;
+
+    private PositionMatcher() {
+    }
+
+    /**
+     * Есть ли на странице фраза: слово terms[i] стоит на offsets[i] позже первого.
+     *
+     * @param terms   индексы курсоров слов фразы
+     * @param offsets смещения слов внутри фразы, offsets[0] == 0
+     */
+    public static boolean containsPhrase(PostingsCursor[] cursors, int[] terms, int[] offsets) {
+        int[][] positions = new int[terms.length][];
+        for (int i = 0; i < terms.length; i++) {
+            positions[i] = cursors[terms[i]].positions();
+            if (positions[i] == null) return true;
+        }
+        outer:
+        for (int start : positions[0]) {
+            for (int i = 1; i < terms.length; i++) {
+                if (Arrays.binarySearch(positions[i], start + offsets[i]) < 0) continue outer;
+            }
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Длина наименьшего окна (в словах), в котором встречаются все слова курсоров,
+     * или {@link #NO_SPAN}, если позиций нет.
+     */
+    public static int minSpan(PostingsCursor[] cursors) {
+        int n = cursors.length;
+        int[][] positions = new int[n][];
+        for (int i = 0; i < n; i++) {
+            positions[i] = cursors[i].positions();
+            if (positions[i] == null || positions[i].length == 0) return NO_SPAN;
+        }
+        int[] at = new int[n];
+        int best = Integer.MAX_VALUE;
+        while (true) {
+            int min = Integer.MAX_VALUE;
+            int max = Integer.MIN_VALUE;
+            int minList = 0;
+            for (int i = 0; i < n; i++) {
+                int position = positions[i][at[i]];
+                if (position < min) {
+                    min = position;
+                    minList = i;
+                }
+                if (position > max) max = position;
+            }
+            best = Math.min(best, max - min + 1);
+            if (++at[minList] == positions[minList].length) return best;
+        }
+    }
+}
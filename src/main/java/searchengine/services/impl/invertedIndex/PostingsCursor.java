@@ -0,0 +1,113 @@
+package searchengine.services.impl.invertedIndex;
+
+/**
+ * Курсор по снимку списка страниц. {@link #advance(int)} сначала галопирует
+ * по указателям пропуска, затем декодирует не больше одного блока.
+ */
+public final class PostingsCursor {
+    public static final int NO_MORE_PAGES = Integer.MAX_VALUE;
+
+    private final PostingsList.Snapshot snapshot;
+    private int index = -1;
+    private int pos;
+    private int pageId;
+    private int decodedIndex = -1;
+    private int[] decodedPositions;
+
+    PostingsCursor(PostingsList.Snapshot snapshot) {
+        this.snapshot = snapshot;
+    }
+
+    public int pageId() {
+        return pageId;
+    }
+
+    public float rank() {
+        return snapshot.ranks()[index];
+    }
+
+    /**
+     * Позиции слов текущей страницы по возрастанию или null,
+     * если страница проиндексирована без позиций.
+     */
+    public int[] positions() {
+        if (decodedIndex != index) {
+            byte[][] positions = snapshot.positions();
+            decodedPositions = positions == null || positions[index] == null
+                    ? null : VarInt.decodeDeltas(positions[index]);
+            decodedIndex = index;
+        }
+        return decodedPositions;
+    }
+
+    public int size() {
+        return snapshot.size();
+    }
+
+    public int next() {
+        if (index + 1 >= snapshot.size()) {
+            index = snapshot.size();
+            return pageId = NO_MORE_PAGES;
+        }
+        byte[] docs = snapshot.docs();
+        int delta = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = docs[pos++];
+            delta |= (b & 0x7F) << shift;
+            shift += 7;
+        } while (b < 0);
+        index++;
+        return pageId += delta;
+    }
+
+    /**
+     * Сдвигает курсор на первую страницу с id не меньше target.
+     */
+    public int advance(int target) {
+        if (index >= 0 && pageId >= target) return pageId;
+        if (index >= snapshot.size()) return NO_MORE_PAGES;
+
+        int block = skipTo(target);
+        if (block >= 0) {
+            index = block * PostingsList.SKIP_INTERVAL - 1;
+            pos = snapshot.skipOffsets()[block];
+            pageId = snapshot.skipBases()[block];
+        }
+        while (next() < target) {
+            // линейно внутри блока
+        }
+        return pageId;
+    }
+
+    /**
+     * Ищет последний блок правее текущего, чей базовый id меньше target:
+     * экспоненциальный шаг по указателям пропуска, затем бинарный поиск.
+     */
+    private int skipTo(int target) {
+        int[] bases = snapshot.skipBases();
+        int blocks = snapshot.skipCount();
+        int current = (index + 1) / PostingsList.SKIP_INTERVAL;
+        int lo = current + 1;
+        if (lo >= blocks || bases[lo] >= target) return -1;
+
+        int step = 1;
+        int hi = lo + step;
+        while (hi < blocks && bases[hi] < target) {
+            lo = hi;
+            step <<= 1;
+            hi = lo + step;
+        }
+        hi = Math.min(hi, blocks);
+        while (hi - lo > 1) {
+            int mid = (lo + hi) >>> 1;
+            if (bases[mid] < target) {
+                lo = mid;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+}
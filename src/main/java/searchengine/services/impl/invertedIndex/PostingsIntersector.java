@@ -0,0 +1,53 @@
+package searchengine.services.impl.invertedIndex;
+
+import java.util.List;
+
+/**
+ * Пересечение списков страниц. Списки должны быть отсортированы от редкого к частому:
+ * самый редкий ведёт, остальные догоняют его через {@link PostingsCursor#advance(int)},
+ * поэтому стоимость определяется размером самого редкого списка.
+ */
+public final class PostingsIntersector {
+    private PostingsIntersector() {
+    }
+
+    /**
+     * @param filter дополнительное условие на найденную страницу (например, фраза), может быть null
+     */
+    public static PageHits intersect(List<PostingsList> rarestFirst, PageFilter filter, PageScorer scorer) {
+        if (rarestFirst.isEmpty()) return PageHits.EMPTY;
+
+        int n = rarestFirst.size();
+        PostingsCursor[] cursors = new PostingsCursor[n];
+        for (int i = 0; i < n; i++) {
+            cursors[i] = rarestFirst.get(i).cursor();
+        }
+
+        PostingsCursor lead = cursors[0];
+        int[] pageIds = new int[lead.size()];
+        float[] scores = new float[lead.size()];
+        int size = 0;
+
+        int candidate = lead.next();
+        outer:
+        while (candidate != PostingsCursor.NO_MORE_PAGES) {
+            for (int i = 1; i < n; i++) {
+                int found = cursors[i].advance(candidate);
+                if (found == PostingsCursor.NO_MORE_PAGES) break outer;
+                if (found > candidate) {
+                    candidate = lead.advance(found);
+                    continue outer;
+                }
+            }
+            if (filter != null && !filter.accept(candidate, cursors)) {
+                candidate = lead.next();
+                continue;
+            }
+            pageIds[size] = candidate;
+            scores[size] = scorer.score(candidate, cursors);
+            size++;
+            candidate = lead.next();
+        }
+        return size == 0 ? PageHits.EMPTY : new PageHits(pageIds, scores, size);
+    }
+}
@@ -0,0 +1,170 @@
+package searchengine.services.impl.invertedIndex;
+
+import java.util.Arrays;
+
+/**
+ * Список страниц одной леммы: id страниц по возрастанию, сжатые дельтами в varint,
+ * и ранги в параллельном массиве float. Для позиционного индекса рядом лежат
+ * позиции слов страницы, сжатые дельтами в varint; массив позиций заводится только
+ * при первой записи с позициями. Каждые {@link #SKIP_INTERVAL} записей
+ * сохраняется указатель пропуска (базовый id и смещение в байтах), по которому
+ * курсор перепрыгивает блоки при пересечении. Запись идёт под монитором,
+ * чтение — без блокировок через неизменяемый снимок.
+ */
+public final class PostingsList {
+    public static final int SKIP_INTERVAL = 64;
+
+    private volatile Snapshot snapshot = Snapshot.EMPTY;
+
+    public int size() {
+        return snapshot.size;
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    public PostingsCursor cursor() {
+        return new PostingsCursor(snapshot);
+    }
+
+    public void add(int pageId, float rank) {
+        add(pageId, rank, null);
+    }
+
+    public synchronized void add(int pageId, float rank, byte[] pagePositions) {
+        Snapshot s = snapshot;
+        if (s.size > 0 && pageId <= s.lastPageId) {
+            rebuild(pageId, rank, pagePositions, false);
+            return;
+        }
+        byte[] docs = s.docs;
+        if (s.byteLength + VarInt.MAX_BYTES > docs.length) {
+            docs = Arrays.copyOf(docs, Math.max(16, (s.byteLength + VarInt.MAX_BYTES) * 2));
+        }
+        float[] ranks = s.ranks;
+        if (s.size == ranks.length) {
+            ranks = Arrays.copyOf(ranks, Math.max(4, s.size * 2));
+        }
+        byte[][] positions = s.positions;
+        if (pagePositions != null && positions == null) {
+            positions = new byte[ranks.length][];
+        } else if (positions != null && positions.length < ranks.length) {
+            positions = Arrays.copyOf(positions, ranks.length);
+        }
+        if (positions != null) {
+            positions[s.size] = pagePositions;
+        }
+        int[] skipBases = s.skipBases;
+        int[] skipOffsets = s.skipOffsets;
+        if (s.size % SKIP_INTERVAL == 0) {
+            int block = s.size / SKIP_INTERVAL;
+            if (block == skipBases.length) {
+                skipBases = Arrays.copyOf(skipBases, Math.max(2, block * 2));
+                skipOffsets = Arrays.copyOf(skipOffsets, Math.max(2, block * 2));
+            }
+            skipBases[block] = s.lastPageId;
+            skipOffsets[block] = s.byteLength;
+        }
+        int byteLength = VarInt.write(docs, s.byteLength, pageId - s.lastPageId);
+        ranks[s.size] = rank;
+        snapshot = new Snapshot(docs, byteLength, ranks, positions, s.size + 1, pageId, skipBases, skipOffsets);
+    }
+
+    public synchronized void remove(int pageId) {
+        rebuild(pageId, 0f, null, true);
+    }
+
+    private void rebuild(int pageId, float rank, byte[] pagePositions, boolean remove) {
+        Snapshot s = snapshot;
+        int[] ids = s.decodePageIds();
+        int n = s.size;
+        int pos = Arrays.binarySearch(ids, 0, n, pageId);
+        byte[][] oldPositions = s.positions;
+        if (oldPositions == null && pagePositions != null) {
+            oldPositions = new byte[n][];
+        }
+        int[] newIds;
+        float[] newRanks;
+        byte[][] newPositions = null;
+        if (pos >= 0) {
+            if (remove) {
+                newIds = new int[n - 1];
+                newRanks = new float[n - 1];
+                System.arraycopy(ids, 0, newIds, 0, pos);
+                System.arraycopy(ids, pos + 1, newIds, pos, n - pos - 1);
+                System.arraycopy(s.ranks, 0, newRanks, 0, pos);
+                System.arraycopy(s.ranks, pos + 1, newRanks, pos, n - pos - 1);
+                if (oldPositions != null) {
+                    newPositions = new byte[n - 1][];
+                    System.arraycopy(oldPositions, 0, newPositions, 0, pos);
+                    System.arraycopy(oldPositions, pos + 1, newPositions, pos, n - pos - 1);
+                }
+            } else {
+                newIds = Arrays.copyOf(ids, n);
+                newRanks = Arrays.copyOf(s.ranks, n);
+                newRanks[pos] = rank;
+                if (oldPositions != null) {
+                    newPositions = Arrays.copyOf(oldPositions, n);
+                    newPositions[pos] = pagePositions;
+                }
+            }
+        } else {
+            if (remove) return;
+            int ins = -pos - 1;
+            newIds = new int[n + 1];
+            newRanks = new float[n + 1];
+            System.arraycopy(ids, 0, newIds, 0, ins);
+            System.arraycopy(ids, ins, newIds, ins + 1, n - ins);
+            System.arraycopy(s.ranks, 0, newRanks, 0, ins);
+            System.arraycopy(s.ranks, ins, newRanks, ins + 1, n - ins);
+            newIds[ins] = pageId;
+            newRanks[ins] = rank;
+            if (oldPositions != null) {
+                newPositions = new byte[n + 1][];
+                System.arraycopy(oldPositions, 0, newPositions, 0, ins);
+                System.arraycopy(oldPositions, ins, newPositions, ins + 1, n - ins);
+                newPositions[ins] = pagePositions;
+            }
+        }
+        snapshot = Snapshot.of(newIds, newRanks, newPositions);
+    }
+
+    public record Snapshot(byte[] docs, int byteLength, float[] ranks, byte[][] positions, int size, int lastPageId,
+                           int[] skipBases, int[] skipOffsets) {
+        static final Snapshot EMPTY = new Snapshot(new byte[0], 0, new float[0], null, 0, 0, new int[0], new int[0]);
+
+        static Snapshot of(int[] pageIds, float[] ranks, byte[][] positions) {
+            int n = pageIds.length;
+            if (n == 0) return EMPTY;
+            int blocks = (n + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+            int[] skipBases = new int[blocks];
+            int[] skipOffsets = new int[blocks];
+            byte[] docs = new byte[n * VarInt.MAX_BYTES];
+            int pos = 0;
+            int prev = 0;
+            for (int i = 0; i < n; i++) {
+                if (i % SKIP_INTERVAL == 0) {
+                    skipBases[i / SKIP_INTERVAL] = prev;
+                    skipOffsets[i / SKIP_INTERVAL] = pos;
+                }
+                pos = VarInt.write(docs, pos, pageIds[i] - prev);
+                prev = pageIds[i];
+            }
+            return new Snapshot(docs, pos, ranks, positions, n, prev, skipBases, skipOffsets);
+        }
+
+        public int skipCount() {
+            return (size + SKIP_INTERVAL - 1) / SKIP_INTERVAL;
+        }
+
+        public int[] decodePageIds() {
+            int[] ids = new int[size];
+            PostingsCursor cursor = new PostingsCursor(this);
+            for (int i = 0; cursor.next() != PostingsCursor.NO_MORE_PAGES; i++) {
+                ids[i] = cursor.pageId();
+            }
+            return ids;
+        }
+    }
+}
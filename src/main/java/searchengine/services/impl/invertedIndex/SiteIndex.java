@@ -0,0 +1,85 @@
+package searchengine.services.impl.invertedIndex;
+
+import searchengine.services.impl.textWorkers.LemmaCounts;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+public final class SiteIndex {
+    /** Общий счётчик версий: у пересозданного индекса сайта версия не повторяет прежнюю. */
+    private static final AtomicLong VERSIONS = new AtomicLong();
+
+    private final int siteId;
+    private volatile long version = VERSIONS.incrementAndGet();
+    private final ConcurrentHashMap<String, PostingsList> postings = new ConcurrentHashMap<>();
+    private final DocumentStats stats = new DocumentStats();
+
+    public SiteIndex(int siteId) {
+        this.siteId = siteId;
+    }
+
+    public int getSiteId() {
+        return siteId;
+    }
+
+    /**
+     * Версия индекса сайта, меняется при каждой записи или удалении страниц.
+     * По ней кэш результатов поиска понимает, что ответ устарел.
+     */
+    public long version() {
+        return version;
+    }
+
+    public PostingsList getPostings(String lemma) {
+        return postings.get(lemma);
+    }
+
+    public int lemmaCount() {
+        return postings.size();
+    }
+
+    /**
+     * Число страниц и длины документов сайта, поддерживаются вместе со списками страниц.
+     */
+    public DocumentStats getStats() {
+        return stats;
+    }
+
+    public void add(String lemma, int pageId, float rank, byte[] positions) {
+        stats.accumulate(pageId, (int) rank);
+        // добавление внутри compute: иначе список, опустевший в removePage, может быть
+        // уже отвязан от карты, и страница ляжет мимо индекса
+        postings.compute(lemma, (l, list) -> {
+            PostingsList target = list != null ? list : new PostingsList();
+            target.add(pageId, rank, positions);
+            return target;
+        });
+    }
+
+    public void addPage(int pageId, LemmaCounts lemmaCounts) {
+        lemmaCounts.forEach((lemma, count) -> add(lemma, pageId, count, lemmaCounts.encodedPositions(lemma)));
+        version = VERSIONS.incrementAndGet();
+    }
+
+    /**
+     * Позиции леммы на странице или null, если леммы на странице нет или позиции не хранятся.
+     */
+    public int[] positions(String lemma, int pageId) {
+        PostingsList list = postings.get(lemma);
+        if (list == null) return null;
+        PostingsCursor cursor = list.cursor();
+        return cursor.advance(pageId) == pageId ? cursor.positions() : null;
+    }
+
+    public void removePage(int pageId, Collection<String> lemmas) {
+        stats.remove(pageId);
+        for (String lemma : lemmas) {
+            postings.computeIfPresent(lemma, (l, list) -> {
+                list.remove(pageId);
+                return list.size() == 0 ? null : list;
+            });
+        }
+        version = VERSIONS.incrementAndGet();
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.services.impl.invertedIndex;
+
+import java.util.Arrays;
+
+public final class VarInt {
+    public static final int MAX_BYTES = 5;
+
+    private VarInt() {
+    }
+
+    public static int write(byte[] buf, int pos, int value) {
+        while ((value & ~0x7F) != 0) {
+            buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        buf[pos++] = (byte) value;
+        return pos;
+    }
+
+    /**
+     * Кодирует возрастающую последовательность как дельты в varint.
+     */
+    public static byte[] encodeDeltas(int[] values, int length) {
+        byte[] buf = new byte[length * MAX_BYTES];
+        int pos = 0;
+        int prev = 0;
+        for (int i = 0; i < length; i++) {
+            pos = write(buf, pos, values[i] - prev);
+            prev = values[i];
+        }
+        return Arrays.copyOf(buf, pos);
+    }
+
+    public static int[] decodeDeltas(byte[] buf) {
+        if (buf == null || buf.length == 0) return new int[0];
+        int[] values = new int[buf.length];
+        int count = 0;
+        int pos = 0;
+        int prev = 0;
+        while (pos < buf.length) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buf[pos++];
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            prev += value;
+            values[count++] = prev;
+        }
+        return Arrays.copyOf(values, count);
+    }
+}
@@ -18,6 +18,14 @@ public final class ActiveTasks {
         }
     }
 
+    public void awaitZero() throws InterruptedException {
+        synchronized (monitor) {
+            while (count.get() > 0) {
+                monitor.wait();
+            }
+        }
+    }
+
     public void awaitZero(long timeout, TimeUnit unit) throws InterruptedException {
         long deadline = System.nanoTime() + unit.toNanos(timeout);
         synchronized (monitor) {
@@ -0,0 +1,211 @@
+package searchengine.services.impl.scraper;
+
+import lombok.extern.log4j.Log4j2;
+
+import java.time.Instant;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * Очередь обхода одного сайта с дедупликацией, ограничениями по глубине
+ * и числу страниц. Обход завершён, когда очередь пуста и ни один воркер
+ * не обрабатывает страницу — тогда {@link #take()} возвращает null всем воркерам.
+ * Пока идёт засев из sitemap ({@link #hold()}), обход не считается завершённым.
+ */
+@Log4j2
+public class CrawlFrontier {
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private final PriorityQueue<FrontierEntry> queue = new PriorityQueue<>(FrontierEntry.ORDER);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final AtomicLong seq = new AtomicLong();
+    private final int maxDepth;
+    private final int maxPages;
+    private final FrontierCheckpoint checkpoint;
+    private final Map<String, Instant> lastmods = new ConcurrentHashMap<>();
+    private volatile Predicate<String> pathFilter = path -> true;
+    private int inFlight;
+    private boolean closed;
+
+    /**
+     * @param maxDepth максимальная глубина ссылок от корня, 0 — без ограничения
+     * @param maxPages максимальное число страниц сайта, 0 — без ограничения
+     */
+    public CrawlFrontier(int maxDepth, int maxPages) {
+        this(maxDepth, maxPages, null);
+    }
+
+    public CrawlFrontier(int maxDepth, int maxPages, FrontierCheckpoint checkpoint) {
+        this.maxDepth = maxDepth;
+        this.maxPages = maxPages;
+        this.checkpoint = checkpoint;
+    }
+
+    public boolean offer(String path, int depth) {
+        return offer(path, depth, 0);
+    }
+
+    public boolean offer(String path, int depth, int priority) {
+        if (maxDepth > 0 && depth > maxDepth) return false;
+        if (maxPages > 0 && seen.size() >= maxPages) return false;
+        if (!pathFilter.test(path)) return false;
+        if (!seen.add(path)) return false;
+
+        FrontierEntry entry = new FrontierEntry(path, depth, priority, seq.getAndIncrement());
+        lock.lock();
+        try {
+            if (closed) return false;
+            // в журнал раньше, чем в очередь: отметка о посещении не может обогнать запись
+            if (checkpoint != null) {
+                checkpoint.onOffer(entry);
+            }
+            queue.add(entry);
+            changed.signal();
+        } finally {
+            lock.unlock();
+        }
+        return true;
+    }
+
+    /**
+     * Отмечает путь как уже обработанный без постановки в очередь (например, конечный путь
+     * редиректа, под которым сохраняется другая страница очереди).
+     *
+     * @return false, если путь уже встречался
+     */
+    public boolean claim(String path) {
+        return seen.add(path);
+    }
+
+    /**
+     * URL из sitemap: дата lastmod запоминается, чтобы при инкрементальном обходе
+     * не загружать страницу, которая с прошлого раза не менялась.
+     */
+    public boolean offer(String path, int depth, Instant lastmod) {
+        boolean added = offer(path, depth, 0);
+        if (added && lastmod != null) {
+            lastmods.put(path, lastmod);
+        }
+        return added;
+    }
+
+    /**
+     * @return lastmod из sitemap для пути или null; запись после чтения удаляется
+     */
+    public Instant takeLastmod(String path) {
+        return lastmods.remove(path);
+    }
+
+    /**
+     * Фильтр путей (например, правила robots.txt), проверяется до дедупликации.
+     */
+    public void setPathFilter(Predicate<String> pathFilter) {
+        this.pathFilter = pathFilter;
+    }
+
+    /**
+     * Считает засев очереди незавершённой работой, пока не вызван {@link #release()}:
+     * воркеры не разойдутся, даже если очередь временно пуста.
+     */
+    public void hold() {
+        lock.lock();
+        try {
+            inFlight++;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void release() {
+        lock.lock();
+        try {
+            inFlight--;
+            if (inFlight == 0 && queue.isEmpty()) {
+                changed.signalAll();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Восстанавливает запись из контрольной точки без повторной записи в журнал.
+     */
+    public void restore(String path, int depth, int priority, boolean visited) {
+        if (!seen.add(path) || visited) return;
+        lock.lock();
+        try {
+            queue.add(new FrontierEntry(path, depth, priority, seq.getAndIncrement()));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Блокируется, пока не появится URL или обход не завершится.
+     */
+    public FrontierEntry take() throws InterruptedException {
+        lock.lock();
+        try {
+            while (queue.isEmpty()) {
+                if (closed || inFlight == 0) {
+                    changed.signalAll();
+                    return null;
+                }
+                changed.await();
+            }
+            if (closed) return null;
+            inFlight++;
+            return queue.poll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Отмечает URL посещённым в журнале. Вызывать, только когда данные страницы записаны
+     * в базу: непосещённый URL при продолжении обхода загружается заново.
+     */
+    public void markVisited(FrontierEntry entry) {
+        if (checkpoint != null) {
+            checkpoint.onVisited(entry);
+        }
+    }
+
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public FrontierCheckpoint getCheckpoint() {
+        return checkpoint;
+    }
+
+    public boolean isSeen(String path) {
+        return seen.contains(path);
+    }
+
+    public int seenCount() {
+        return seen.size();
+    }
+
+    public int pendingCount() {
+        lock.lock();
+        try {
+            return queue.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+}
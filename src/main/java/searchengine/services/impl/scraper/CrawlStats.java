@@ -0,0 +1,54 @@
+package searchengine.services.impl.scraper;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Счётчики обхода одного сайта: сколько было загрузок и сколько из них повторных.
+ * В нормальном обходе duplicates всегда 0 — каждый URL загружается ровно один раз.
+ */
+public final class CrawlStats {
+    private final String siteName;
+    private final Set<String> fetchedUrls = ConcurrentHashMap.newKeySet();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicInteger duplicates = new AtomicInteger();
+    private final Counter fetchCounter;
+    private final Counter duplicateCounter;
+
+    public CrawlStats(String siteName, MeterRegistry meterRegistry) {
+        this.siteName = siteName;
+        this.fetchCounter = meterRegistry.counter("crawler.fetches", "site", siteName);
+        this.duplicateCounter = meterRegistry.counter("crawler.fetches.duplicate", "site", siteName);
+    }
+
+    public void recordFetch(String url) {
+        fetches.incrementAndGet();
+        fetchCounter.increment();
+        if (!fetchedUrls.add(url)) {
+            duplicates.incrementAndGet();
+            duplicateCounter.increment();
+        }
+    }
+
+    public int getFetches() {
+        return fetches.get();
+    }
+
+    public int getDistinctUrls() {
+        return fetchedUrls.size();
+    }
+
+    public int getDuplicates() {
+        return duplicates.get();
+    }
+
+    @Override
+    public String toString() {
+        return "site \"" + siteName + "\": " + fetches.get() + " fetches, "
+                + fetchedUrls.size() + " distinct urls, " + duplicates.get() + " duplicate fetches";
+    }
+}
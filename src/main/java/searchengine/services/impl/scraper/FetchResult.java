@@ -0,0 +1,91 @@
+package searchengine.services.impl.scraper;
+
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.http.HttpHeaders;
+import java.nio.charset.Charset;
+import java.nio.charset.IllegalCharsetNameException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Locale;
+
+public record FetchResult(String url, int statusCode, byte[] body, HttpHeaders headers, String error) {
+
+    public static FetchResult failed(String url, String error) {
+        return new FetchResult(url, 500, new byte[0], null, error);
+    }
+
+    /**
+     * Ответ без запроса: по lastmod из sitemap известно, что страница не менялась.
+     */
+    public static FetchResult notModified(String url) {
+        return new FetchResult(url, 304, new byte[0], null, null);
+    }
+
+    public boolean isFailed() {
+        return error != null;
+    }
+
+    public boolean isNotModified() {
+        return statusCode == 304;
+    }
+
+    public String etag() {
+        return header("ETag");
+    }
+
+    public String lastModified() {
+        return header("Last-Modified");
+    }
+
+    /**
+     * SHA-256 тела ответа в hex — по нему видно, что страница не менялась,
+     * даже если сервер не отдаёт валидаторы для условного запроса.
+     */
+    public String contentHash() {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    public String contentType() {
+        return headers == null ? "" : headers.firstValue("Content-Type").orElse("");
+    }
+
+    public boolean isHtml() {
+        String type = contentType().toLowerCase(Locale.ROOT);
+        return type.isEmpty() || type.startsWith("text/") || type.contains("html") || type.contains("xml");
+    }
+
+    /**
+     * Разбирает тело ответа; кодировку Jsoup берёт из заголовка или из meta, как при Jsoup.connect.
+     */
+    public Document parse() throws IOException {
+        return Jsoup.parse(new ByteArrayInputStream(body), charset(), url);
+    }
+
+    private String header(String name) {
+        return headers == null ? null : headers.firstValue(name).orElse(null);
+    }
+
+    private String charset() {
+        String type = contentType();
+        int idx = type.toLowerCase(Locale.ROOT).indexOf("charset=");
+        if (idx < 0) return null;
+        String name = type.substring(idx + 8).replace("\"", "").trim();
+        int end = name.indexOf(';');
+        if (end >= 0) name = name.substring(0, end).trim();
+        try {
+            return Charset.isSupported(name) ? name : null;
+        } catch (IllegalCharsetNameException e) {
+            // битое имя в заголовке (пустое, с пробелом): кодировку определит Jsoup по <meta>
+            return null;
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package searchengine.services.impl.scraper;
+
+import lombok.extern.log4j.Log4j2;
+import searchengine.repos.FrontierRepository;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Журнал очереди обхода в таблице crawl_frontier: новые URL и отметки о посещении
+ * копятся в памяти и сбрасываются пачками, чтобы после остановки или падения
+ * обход можно было продолжить с того же места. Пачка, которую не удалось записать,
+ * возвращается в буфер и пишется следующей попыткой; явный {@link #flush()} при ошибке бросает исключение.
+ */
+@Log4j2
+public class FrontierCheckpoint {
+    private final FrontierRepository frontierRepo;
+    private final int siteId;
+    private final int batchSize;
+    private final ReentrantLock flushLock = new ReentrantLock();
+    private List<FrontierEntry> added = new ArrayList<>();
+    private List<String> visited = new ArrayList<>();
+
+    public FrontierCheckpoint(FrontierRepository frontierRepo, int siteId, int batchSize) {
+        this.frontierRepo = frontierRepo;
+        this.siteId = siteId;
+        this.batchSize = batchSize;
+    }
+
+    public synchronized void onOffer(FrontierEntry entry) {
+        added.add(entry);
+    }
+
+    public void onVisited(FrontierEntry entry) {
+        boolean full;
+        synchronized (this) {
+            visited.add(entry.path());
+            full = added.size() + visited.size() >= batchSize;
+        }
+        if (full && flushLock.tryLock()) {
+            try {
+                writeBatch();
+            } catch (RuntimeException e) {
+                log.error("Failed to checkpoint crawl frontier for site {}, will retry", siteId, e);
+            } finally {
+                flushLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * @throws RuntimeException если журнал не записался; записи остаются в буфере
+     */
+    public void flush() {
+        flushLock.lock();
+        try {
+            writeBatch();
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * @return число непосещённых URL, восстановленных в очередь
+     */
+    public int restore(CrawlFrontier frontier) {
+        int pending = 0;
+        int done = 0;
+        for (FrontierRepository.FrontierRow row : frontierRepo.findBySite(siteId)) {
+            boolean isVisited = Boolean.TRUE.equals(row.getVisited());
+            frontier.restore(row.getPath(), row.getDepth(), row.getPriority(), isVisited);
+            if (isVisited) done++; else pending++;
+        }
+        log.info("Restored crawl frontier for site {}: {} pending, {} visited", siteId, pending, done);
+        return pending;
+    }
+
+    public void clear() {
+        flushLock.lock();
+        try {
+            synchronized (this) {
+                added = new ArrayList<>();
+                visited = new ArrayList<>();
+            }
+            frontierRepo.deleteBySite(siteId);
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private void writeBatch() {
+        List<FrontierEntry> addedBatch;
+        List<String> visitedBatch;
+        synchronized (this) {
+            if (added.isEmpty() && visited.isEmpty()) return;
+            addedBatch = added;
+            visitedBatch = visited;
+            added = new ArrayList<>();
+            visited = new ArrayList<>();
+        }
+        boolean addedWritten = false;
+        try {
+            if (!addedBatch.isEmpty()) {
+                int n = addedBatch.size();
+                String[] paths = new String[n];
+                int[] depths = new int[n];
+                int[] priorities = new int[n];
+                for (int i = 0; i < n; i++) {
+                    FrontierEntry entry = addedBatch.get(i);
+                    paths[i] = entry.path();
+                    depths[i] = entry.depth();
+                    priorities[i] = entry.priority();
+                }
+                frontierRepo.batchInsertPending(siteId, paths, depths, priorities);
+            }
+            addedWritten = true;
+            if (!visitedBatch.isEmpty()) {
+                frontierRepo.markVisited(siteId, visitedBatch.toArray(new String[0]));
+            }
+        } catch (RuntimeException e) {
+            requeue(addedWritten ? List.of() : addedBatch, visitedBatch);
+            throw e;
+        }
+    }
+
+    private synchronized void requeue(List<FrontierEntry> addedBatch, List<String> visitedBatch) {
+        List<FrontierEntry> mergedAdded = new ArrayList<>(addedBatch);
+        mergedAdded.addAll(added);
+        added = mergedAdded;
+        List<String> mergedVisited = new ArrayList<>(visitedBatch);
+        mergedVisited.addAll(visited);
+        visited = mergedVisited;
+    }
+}
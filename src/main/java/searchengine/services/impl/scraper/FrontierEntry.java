@@ -0,0 +1,14 @@
+package searchengine.services.impl.scraper;
+
+import java.util.Comparator;
+
+/**
+ * URL в очереди обхода. Меньшее значение priority обрабатывается раньше,
+ * при равном приоритете — меньшая глубина (обход в ширину), затем порядок добавления.
+ */
+public record FrontierEntry(String path, int depth, int priority, long seq) {
+    public static final Comparator<FrontierEntry> ORDER = Comparator
+            .comparingInt(FrontierEntry::priority)
+            .thenComparingInt(FrontierEntry::depth)
+            .thenComparingLong(FrontierEntry::seq);
+}
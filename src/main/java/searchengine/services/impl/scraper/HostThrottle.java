@@ -0,0 +1,164 @@
+package searchengine.services.impl.scraper;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import searchengine.config.CrawlerSettings;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Вежливость к одному хосту: ведро токенов ограничивает частоту запросов,
+ * окно AIMD — число одновременных. Успешный быстрый ответ понемногу расширяет
+ * окно и частоту на постоянный шаг (аддитивно), 429/503, сбой соединения или рост задержки выше цели
+ * сжимают их вдвое (мультипликативно, не чаще раза за период охлаждения).
+ * Retry-After приостанавливает хост целиком. Частота, окно и число запросов
+ * в полёте выгружаются в метрики crawler.host.* с тегом host.
+ */
+final class HostThrottle {
+    private static final double LATENCY_ALPHA = 0.2;
+    private static final long DECREASE_COOLDOWN_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final CrawlerSettings settings;
+    private double rateCeiling;
+    private double rate;
+    private double tokens;
+    private long refilledAt = System.nanoTime();
+    private double window;
+    private int inFlight;
+    private long blockedUntil;
+    private long lastDecreaseAt;
+    private double latencyMs;
+
+    HostThrottle(String host, CrawlerSettings settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.rateCeiling = settings.getHostMaxRate();
+        this.rate = settings.getHostMaxRate();
+        this.tokens = 1;
+        this.window = settings.getMaxConnectionsPerHost();
+        this.blockedUntil = refilledAt;
+        this.lastDecreaseAt = refilledAt - DECREASE_COOLDOWN_NANOS;
+        Gauge.builder("crawler.host.rate", this, HostThrottle::rate).tag("host", host).register(meterRegistry);
+        Gauge.builder("crawler.host.concurrency", this, HostThrottle::window).tag("host", host).register(meterRegistry);
+        Gauge.builder("crawler.host.inflight", this, HostThrottle::inFlight).tag("host", host).register(meterRegistry);
+    }
+
+    /**
+     * Ждёт, пока хост не на паузе, в окне есть место и в ведре есть токен.
+     */
+    void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (true) {
+                long now = System.nanoTime();
+                refill(now);
+                if (now - blockedUntil < 0) {
+                    changed.awaitNanos(blockedUntil - now);
+                } else if (inFlight >= (int) window) {
+                    changed.await();
+                } else if (tokens < 1) {
+                    changed.awaitNanos((long) ((1 - tokens) / rate * 1e9) + 1);
+                } else {
+                    tokens -= 1;
+                    inFlight++;
+                    return;
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Итог запроса, взятого через {@link #acquire()}.
+     *
+     * @param overloaded     хост ответил 429/503 или соединение не удалось
+     * @param retryAfterNanos пауза из Retry-After, 0 — без паузы
+     */
+    void release(long latencyNanos, boolean overloaded, long retryAfterNanos) {
+        lock.lock();
+        try {
+            long now = System.nanoTime();
+            inFlight--;
+            double ms = latencyNanos / 1e6;
+            latencyMs = latencyMs == 0 ? ms : latencyMs + LATENCY_ALPHA * (ms - latencyMs);
+            if (retryAfterNanos > 0 && now + retryAfterNanos - blockedUntil > 0) {
+                blockedUntil = now + retryAfterNanos;
+            }
+            if (overloaded || latencyMs > settings.getHostLatencyTargetMs()) {
+                if (now - lastDecreaseAt > DECREASE_COOLDOWN_NANOS) {
+                    window = Math.max(1, window / 2);
+                    rate = Math.min(rateCeiling, Math.max(settings.getHostMinRate(), rate / 2));
+                    lastDecreaseAt = now;
+                }
+            } else {
+                window = Math.min(settings.getMaxConnectionsPerHost(), window + settings.getHostWindowStep());
+                rate = Math.min(rateCeiling, rate + settings.getHostRateStep());
+            }
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Освобождает место в окне без учёта в AIMD: запрос так и не был отправлен.
+     */
+    void cancel() {
+        lock.lock();
+        try {
+            inFlight--;
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Потолок частоты, например из Crawl-delay: не чаще одного запроса в delayMs.
+     */
+    void limitRate(long delayMs) {
+        lock.lock();
+        try {
+            rateCeiling = delayMs > 0 ? Math.min(settings.getHostMaxRate(), 1000d / delayMs) : settings.getHostMaxRate();
+            rate = Math.min(rate, rateCeiling);
+            tokens = Math.min(tokens, 1);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Тайм-аут запроса по сглаженной задержке хоста: медленный хост ждём дольше,
+     * но не больше timeout-ms; пока задержка неизвестна — timeout-ms.
+     */
+    long timeoutMs() {
+        lock.lock();
+        try {
+            if (latencyMs == 0) return settings.getTimeoutMs();
+            return Math.max(settings.getMinTimeoutMs(), Math.min(settings.getTimeoutMs(), (long) (latencyMs * 10)));
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void refill(long now) {
+        tokens = Math.min(Math.max(1, rate), tokens + (now - refilledAt) / 1e9 * rate);
+        refilledAt = now;
+    }
+
+    private double rate() {
+        return rate;
+    }
+
+    private double window() {
+        return window;
+    }
+
+    private double inFlight() {
+        return inFlight;
+    }
+}
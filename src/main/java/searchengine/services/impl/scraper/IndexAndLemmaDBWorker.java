@@ -7,13 +7,15 @@ import lombok.extern.log4j.Log4j2;
 
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import searchengine.models.IndexesEntity;
-import searchengine.models.LemmaEntity;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 import searchengine.models.PageEntity;
 import searchengine.models.SiteEntity;
+import searchengine.repos.BulkLoadRepository;
 import searchengine.repos.IndexesRepository;
 import searchengine.repos.LemmaRepository;
-import searchengine.services.impl.textWorkers.TextLemmaParser;
+import searchengine.services.impl.invertedIndex.InvertedIndex;
+import searchengine.services.impl.textWorkers.LemmaCounts;
 
 
 @Log4j2
@@ -22,61 +24,172 @@ import searchengine.services.impl.textWorkers.TextLemmaParser;
 public class IndexAndLemmaDBWorker {
     private final LemmaRepository lemmaRepository;
     private final IndexesRepository indexesRepository;
-    private final TextLemmaParser textLemmaParser;
+    private final InvertedIndex invertedIndex;
+    private final LemmaDictionary lemmaDictionary;
+    private final BulkLoadRepository bulkLoadRepository;
 
     @Transactional
-    public void saveTextToLemmasAndIndexes(final String pageText, SiteEntity siteEntity, PageEntity pageEntity) {
-        getLemmasAndCountWithKey(textLemmaParser.sortWordsOnRussianAndEnglishWords(pageText), siteEntity, pageEntity);
+    public void saveLemmasAndIndexes(LemmaCounts lemmaTexts, SiteEntity siteEntity, PageEntity pageEntity) {
+        saveBatch(siteEntity.getId(), List.of(new PageLemmas(pageEntity.getId(), lemmaTexts)));
     }
 
-    public void getLemmasAndCountWithKey(
-            HashMap<String, Integer> lemmaTexts, SiteEntity siteEntity, PageEntity pageEntity) {
-        savesLemmas(lemmaTexts, siteEntity);
-
-        saveIndexes(lemmaTexts, siteEntity, pageEntity);
+    /**
+     * Леммы и индекс сразу для многих страниц сайта: одна агрегированная запись лемм
+     * (frequency += число страниц с леммой в пакете) и одна вставка всех строк индекса.
+     * Id лемм берутся из {@link LemmaDictionary}, без обратного чтения таблицы лемм.
+     */
+    @Transactional
+    public void saveBatch(int siteId, List<PageLemmas> pages) {
+        LemmaCounts pageCounts = new LemmaCounts();
+        int postings = 0;
+        for (PageLemmas page : pages) {
+            page.lemmas().forEach((lemma, count) -> pageCounts.add(lemma, 1));
+            postings += page.lemmas().size();
+        }
+        saveLemmas(siteId, pageCounts);
+        saveIndexes(siteId, pages, postings);
     }
 
-    private void savesLemmas(HashMap<String, Integer> lemmaTexts, SiteEntity siteEntity) {
-        List<String> sorted = new ArrayList<>(lemmaTexts.keySet());
+    /**
+     * Известные словарю леммы обновляются по первичному ключу; те, что не нашлись
+     * (удалены с момента записи в словарь), и новые леммы идут в upsert с RETURNING,
+     * который и пополняет словарь.
+     */
+    private void saveLemmas(int siteId, LemmaCounts pageCounts) {
+        List<String> sorted = pageCounts.keys();
         Collections.sort(sorted);
-        lemmaRepository.batchUpsertIncrement(siteEntity.getId(), sorted.toArray(new String[0]));
+
+        List<String> known = new ArrayList<>();
+        List<String> unknown = new ArrayList<>();
+        for (String lemma : sorted) {
+            (lemmaDictionary.getId(siteId, lemma) != 0 ? known : unknown).add(lemma);
+        }
+
+        if (!known.isEmpty()) {
+            int[] ids = new int[known.size()];
+            int[] increments = new int[known.size()];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = lemmaDictionary.getId(siteId, known.get(i));
+                increments[i] = pageCounts.get(known.get(i));
+            }
+            Set<Integer> updated = new HashSet<>(lemmaRepository.batchIncrementByIds(ids, increments));
+            if (updated.size() < ids.length) {
+                for (int i = 0; i < ids.length; i++) {
+                    if (!updated.contains(ids[i])) {
+                        lemmaDictionary.evict(siteId, known.get(i));
+                        unknown.add(known.get(i));
+                    }
+                }
+                Collections.sort(unknown);
+            }
+        }
+
+        if (!unknown.isEmpty()) {
+            int[] increments = new int[unknown.size()];
+            for (int i = 0; i < increments.length; i++) {
+                increments[i] = pageCounts.get(unknown.get(i));
+            }
+            for (LemmaRepository.LemmaIdRow row
+                    : lemmaRepository.batchUpsertAdd(siteId, unknown.toArray(new String[0]), increments)) {
+                lemmaDictionary.put(siteId, row.getLemma(), row.getId());
+            }
+        }
     }
 
-    private void saveIndexes(HashMap<String, Integer> lemmaTexts, SiteEntity siteEntity, PageEntity pageEntity) {
-        List<LemmaEntity> reloaded = lemmaRepository.findByLemmaIn(
-                new ArrayList<>(lemmaTexts.keySet()), siteEntity.getId()
-        );
+    private void saveIndexes(int siteId, List<PageLemmas> pages, int postings) {
+        int[] pageIds  = new int[postings];
+        int[] lemmaIds = new int[postings];
+        float[] ranks  = new float[postings];
+        String[] positions = new String[postings];
+        Base64.Encoder base64 = Base64.getEncoder();
+        int[] n = {0};
+        for (PageLemmas page : pages) {
+            page.lemmas().forEach((lemma, count) -> {
+                int lemmaId = lemmaDictionary.getId(siteId, lemma);
+                if (lemmaId == 0) return;
+                int i = n[0]++;
+                pageIds[i]  = page.pageId();
+                lemmaIds[i] = lemmaId;
+                ranks[i]    = count;
+                byte[] encoded = page.lemmas().encodedPositions(lemma);
+                positions[i] = encoded != null ? base64.encodeToString(encoded) : null;
+            });
+        }
 
-        int n = reloaded.size();
-        int[] pageIds  = new int[n];
-        int[] lemmaIds = new int[n];
-        float[] ranks  = new float[n];
+        indexesRepository.batchUpsertIndexes(
+                Arrays.copyOf(pageIds, n[0]), Arrays.copyOf(lemmaIds, n[0]), Arrays.copyOf(ranks, n[0]),
+                Arrays.copyOf(positions, n[0]));
 
-        for (int i = 0; i < n; i++) {
-            LemmaEntity le = reloaded.get(i);
-            Integer cnt = lemmaTexts.get(le.getLemma());
-            if (cnt == null) continue;
+        afterCommit(() -> pages.forEach(page -> invertedIndex.addPage(siteId, page.pageId(), page.lemmas())));
+    }
 
-            pageIds[i]  = pageEntity.getId();
-            lemmaIds[i] = le.getId();
-            ranks[i]    = cnt;
+    /**
+     * Режим массовой загрузки: строки индекса уходят бинарным COPY в промежуточную
+     * таблицу сайта, леммы и частоты считаются при переносе в конце обхода.
+     */
+    @Transactional
+    public void stageBatch(int siteId, List<PageLemmas> pages) {
+        int postings = 0;
+        for (PageLemmas page : pages) {
+            postings += page.lemmas().size();
+        }
+        int[] pageIds    = new int[postings];
+        String[] lemmas  = new String[postings];
+        float[] ranks    = new float[postings];
+        byte[][] positions = new byte[postings][];
+        int[] n = {0};
+        for (PageLemmas page : pages) {
+            page.lemmas().forEach((lemma, count) -> {
+                int i = n[0]++;
+                pageIds[i]   = page.pageId();
+                lemmas[i]    = lemma;
+                ranks[i]     = count;
+                positions[i] = page.lemmas().encodedPositions(lemma);
+            });
         }
+        bulkLoadRepository.copyPostings(siteId, pageIds, lemmas, ranks, positions, n[0]);
 
-        indexesRepository.batchUpsertIndexes(pageIds, lemmaIds, ranks);
+        afterCommit(() -> pages.forEach(page -> invertedIndex.addPage(siteId, page.pageId(), page.lemmas())));
     }
 
     @Transactional
     public void removePageData(PageEntity page) {
-        List<IndexesEntity> indexes = indexesRepository.findByPageEntity(page);
-        for (IndexesEntity index : indexes) {
-            LemmaEntity lemma = index.getLemmaEntity();
-            lemma.setFrequency(lemma.getFrequency() - 1);
-            if (lemma.getFrequency() <= 0) {
-                lemmaRepository.delete(lemma);
-            } else {
-                lemmaRepository.save(lemma);
+        removePagesData(page.getSiteEntity().getId(), new int[] {page.getId()});
+    }
+
+    /**
+     * Снимает леммы и индекс страниц сайта двумя запросами вместо построчного обхода:
+     * удаление строк индекса вместе с уменьшением частот лемм и удаление опустевших лемм.
+     */
+    @Transactional
+    public void removePagesData(int siteId, int[] pageIds) {
+        if (pageIds.length == 0) return;
+        Map<Integer, List<String>> lemmasByPage = new HashMap<>();
+        List<Integer> emptyLemmaIds = new ArrayList<>();
+        for (IndexesRepository.RemovedPostingRow row : indexesRepository.deletePostingsOfPages(pageIds)) {
+            lemmasByPage.computeIfAbsent(row.getPageId(), id -> new ArrayList<>()).add(row.getLemma());
+            if (row.getFrequency() <= 0) {
+                emptyLemmaIds.add(row.getLemmaId());
+                lemmaDictionary.evict(siteId, row.getLemma());
             }
         }
-        indexesRepository.deleteAll(indexes);
+        if (!emptyLemmaIds.isEmpty()) {
+            lemmaRepository.deleteEmptyLemmas(emptyLemmaIds.stream().mapToInt(Integer::intValue).toArray());
+        }
+
+        afterCommit(() -> lemmasByPage.forEach((pageId, lemmas) -> invertedIndex.removePage(siteId, pageId, lemmas)));
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
     }
 }
@@ -0,0 +1,188 @@
+package searchengine.services.impl.scraper;
+
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import searchengine.config.PipelineSettings;
+import searchengine.repos.BulkLoadRepository;
+import searchengine.services.impl.textWorkers.LemmaCounts;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Отложенная запись лемм и индекса: страницы копятся по сайту и уходят в базу
+ * одним пакетом, когда набралось batchMaxPages страниц или batchMaxPostings строк индекса,
+ * либо прошло batchFlushIntervalMs с первой страницы пакета. Общие леммы многих страниц
+ * обновляются одной строкой вместо конкурирующих обновлений от каждой страницы.
+ * Сайт сбрасывается в конце своего обхода, всё остальное — при остановке индексации.
+ * Пакет, который не удалось записать, возвращается в очередь сайта и пишется повторно
+ * при следующем сбросе; явный сброс сайта при неудаче бросает исключение.
+ */
+@Log4j2
+@Component
+public class IndexBatchWriter {
+    private final IndexAndLemmaDBWorker indexAndLemmaDBWorker;
+    private final PipelineSettings settings;
+    private final BulkLoadRepository bulkLoadRepository;
+    private final Map<Integer, SiteBatch> batches = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "index-batch-flush");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public IndexBatchWriter(IndexAndLemmaDBWorker indexAndLemmaDBWorker, PipelineSettings settings,
+                            BulkLoadRepository bulkLoadRepository) {
+        this.indexAndLemmaDBWorker = indexAndLemmaDBWorker;
+        this.settings = settings;
+        this.bulkLoadRepository = bulkLoadRepository;
+        long period = Math.max(100, settings.getBatchFlushIntervalMs() / 2);
+        ticker.scheduleWithFixedDelay(this::flushExpired, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Добавляет страницу в пакет сайта; если пакет заполнен, сбрасывает его в вызывающем потоке.
+     *
+     * @param onWritten вызывается, когда пакет со страницей записан в базу, может быть null
+     */
+    public void add(int siteId, int pageId, LemmaCounts lemmas, Runnable onWritten) {
+        SiteBatch batch = batches.computeIfAbsent(siteId, SiteBatch::new);
+        if (batch.append(new PageLemmas(pageId, lemmas, onWritten), settings)) {
+            flush(batch);
+        }
+    }
+
+    /**
+     * Переводит сайт в режим массовой загрузки: его пакеты пишутся COPY в промежуточную таблицу.
+     */
+    public void startBulkLoad(int siteId) {
+        bulkLoadRepository.createStaging(siteId);
+        batches.computeIfAbsent(siteId, SiteBatch::new).bulk = true;
+    }
+
+    /**
+     * Дописывает остаток пакета сайта и возвращает его к обычной записи.
+     *
+     * @throws IllegalStateException если остаток не записался; сайт остаётся в режиме массовой загрузки
+     */
+    public void finishBulkLoad(int siteId) {
+        SiteBatch batch = batches.get(siteId);
+        if (batch == null) return;
+        flushOrThrow(batch);
+        batches.remove(siteId, batch);
+    }
+
+    /**
+     * @throws IllegalStateException если пакет сайта не записался; страницы остаются в очереди
+     */
+    public void flush(int siteId) {
+        SiteBatch batch = batches.get(siteId);
+        if (batch != null) flushOrThrow(batch);
+    }
+
+    public void flushAll() {
+        batches.values().forEach(this::flush);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ticker.shutdownNow();
+        flushAll();
+    }
+
+    private void flushExpired() {
+        long deadline = System.currentTimeMillis() - settings.getBatchFlushIntervalMs();
+        for (SiteBatch batch : batches.values()) {
+            if (batch.isOlderThan(deadline)) flush(batch);
+        }
+    }
+
+    private void flushOrThrow(SiteBatch batch) {
+        RuntimeException failure = flush(batch);
+        if (failure != null) {
+            throw new IllegalStateException("Failed to flush index batch for site " + batch.siteId, failure);
+        }
+    }
+
+    /**
+     * @return ошибка записи или null; при ошибке страницы пакета возвращаются в очередь,
+     * при успехе для каждой страницы вызывается её {@link PageLemmas#onWritten()}
+     */
+    private RuntimeException flush(SiteBatch batch) {
+        batch.flushLock.lock();
+        List<PageLemmas> pages = List.of();
+        try {
+            pages = batch.drain();
+            if (pages.isEmpty()) return null;
+            long started = System.currentTimeMillis();
+            if (batch.bulk) {
+                indexAndLemmaDBWorker.stageBatch(batch.siteId, pages);
+            } else {
+                indexAndLemmaDBWorker.saveBatch(batch.siteId, pages);
+            }
+            log.debug("Flushed {} pages of site {} in {} ms",
+                    pages.size(), batch.siteId, System.currentTimeMillis() - started);
+        } catch (RuntimeException e) {
+            log.error("Failed to flush index batch for site {}, {} pages requeued", batch.siteId, pages.size(), e);
+            batch.requeue(pages);
+            return e;
+        } finally {
+            batch.flushLock.unlock();
+        }
+        pages.forEach(PageLemmas::written);
+        return null;
+    }
+
+    private static final class SiteBatch {
+        private final int siteId;
+        private final ReentrantLock flushLock = new ReentrantLock();
+        private volatile boolean bulk;
+        private List<PageLemmas> pages = new ArrayList<>();
+        private int postings;
+        private long firstAddedAt;
+
+        private SiteBatch(int siteId) {
+            this.siteId = siteId;
+        }
+
+        /**
+         * @return true, если пакет достиг порога и его пора сбросить
+         */
+        private synchronized boolean append(PageLemmas page, PipelineSettings settings) {
+            if (pages.isEmpty()) firstAddedAt = System.currentTimeMillis();
+            pages.add(page);
+            postings += page.lemmas().size();
+            return pages.size() >= settings.getBatchMaxPages() || postings >= settings.getBatchMaxPostings();
+        }
+
+        private synchronized boolean isOlderThan(long deadline) {
+            return !pages.isEmpty() && firstAddedAt <= deadline;
+        }
+
+        private synchronized void requeue(List<PageLemmas> failed) {
+            if (failed.isEmpty()) return;
+            List<PageLemmas> merged = new ArrayList<>(failed.size() + pages.size());
+            merged.addAll(failed);
+            merged.addAll(pages);
+            for (PageLemmas page : failed) {
+                postings += page.lemmas().size();
+            }
+            if (pages.isEmpty()) firstAddedAt = System.currentTimeMillis();
+            pages = merged;
+        }
+
+        private synchronized List<PageLemmas> drain() {
+            List<PageLemmas> drained = pages;
+            pages = new ArrayList<>();
+            postings = 0;
+            return drained;
+        }
+    }
+}
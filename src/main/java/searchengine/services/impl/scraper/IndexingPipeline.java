@@ -0,0 +1,131 @@
+package searchengine.services.impl.scraper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import searchengine.config.PipelineSettings;
+import searchengine.services.impl.textWorkers.TextLemmaParser;
+
+/**
+ * Конвейер индексации: загрузка (воркеры обхода) → разбор → леммы → запись в БД.
+ * Стадии связаны ограниченными очередями и имеют независимые пулы, поэтому медленная
+ * база не останавливает загрузку сверх ёмкости очередей, а медленный сайт не простаивает
+ * лемматизатор, пока у других сайтов есть страницы.
+ */
+@Log4j2
+@Component
+public class IndexingPipeline {
+    private final SiteIndexingImpl siteIndexingImpl;
+    private final TextLemmaParser textLemmaParser;
+    private final IndexBatchWriter indexBatchWriter;
+    private final PipelineStage parseStage;
+    private final PipelineStage lemmaStage;
+    private final PipelineStage persistStage;
+
+    public IndexingPipeline(SiteIndexingImpl siteIndexingImpl, TextLemmaParser textLemmaParser,
+                            IndexBatchWriter indexBatchWriter, PipelineSettings settings,
+                            MeterRegistry meterRegistry) {
+        this.siteIndexingImpl = siteIndexingImpl;
+        this.textLemmaParser = textLemmaParser;
+        this.indexBatchWriter = indexBatchWriter;
+        int capacity = settings.getQueueCapacity();
+        this.parseStage = new PipelineStage("parse", settings.getParseThreads(), capacity, meterRegistry);
+        this.lemmaStage = new PipelineStage("lemmatise", settings.getLemmaThreads(), capacity, meterRegistry);
+        this.persistStage = new PipelineStage("persist", settings.getPersistThreads(), capacity, meterRegistry);
+    }
+
+    /**
+     * Передаёт загруженную страницу на разбор, ожидая места в очереди.
+     * Если задание не принято (исключение), хуки владельца вызывает вызывающий.
+     */
+    public void submit(PageJob job) throws InterruptedException {
+        parseStage.submit(() -> parse(job));
+    }
+
+    private void parse(PageJob job) {
+        try {
+            if (!job.getOwner().isCancelled()) {
+                siteIndexingImpl.parse(job);
+            }
+        } catch (Exception e) {
+            log.error("Error parsing URL: {}", job.getPath(), e);
+            job.setStore(false);
+            job.setFailed(true);
+        } finally {
+            job.getOwner().onParsed(job);
+            job.setDocument(null);
+            job.setResponse(null);
+        }
+        if (job.needsLemmas()) {
+            forward(job, lemmaStage, () -> lemmatise(job));
+        } else {
+            forward(job, persistStage, () -> persist(job));
+        }
+    }
+
+    private void lemmatise(PageJob job) {
+        try {
+            if (!job.getOwner().isCancelled()) {
+                job.setLemmas(textLemmaParser.lemmatizePage(job.lemmaSource()));
+            }
+        } catch (Exception e) {
+            log.error("Error lemmatising URL: {}", job.getPath(), e);
+            job.setStore(false);
+            job.setFailed(true);
+        }
+        forward(job, persistStage, () -> persist(job));
+    }
+
+    private void persist(PageJob job) {
+        try {
+            if (!job.getOwner().isCancelled()) {
+                siteIndexingImpl.persist(job);
+            }
+        } catch (Exception e) {
+            log.error("Error saving URL: {}", job.getPath(), e);
+            job.setFailed(true);
+        } finally {
+            job.getOwner().onFinished(job);
+        }
+    }
+
+    private void forward(PageJob job, PipelineStage stage, Runnable next) {
+        if (!job.isStore() || job.getOwner().isCancelled()) {
+            job.getOwner().onFinished(job);
+            return;
+        }
+        boolean accepted = false;
+        try {
+            stage.submit(next);
+            accepted = true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IllegalStateException e) {
+            log.warn("Dropping {}: {}", job.getPath(), e.getMessage());
+        } finally {
+            if (!accepted) {
+                job.setFailed(true);
+                job.getOwner().onFinished(job);
+            }
+        }
+    }
+
+    /**
+     * Дописывает накопленные леммы и индекс сайта; вызывать, когда его страницы покинули конвейер.
+     */
+    public void flush(int siteId) {
+        indexBatchWriter.flush(siteId);
+    }
+
+    public void flushAll() {
+        indexBatchWriter.flushAll();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        parseStage.shutdown();
+        lemmaStage.shutdown();
+        persistStage.shutdown();
+    }
+}
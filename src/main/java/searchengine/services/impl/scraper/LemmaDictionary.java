@@ -0,0 +1,91 @@
+package searchengine.services.impl.scraper;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Словарь «лемма → id» по сайтам, заполняемый из INSERT ... RETURNING при записи лемм.
+ * Известные леммы обновляются по первичному ключу, а строки индекса пишутся
+ * без обратного чтения id из таблицы лемм. 0 означает «id неизвестен».
+ */
+@Component
+public class LemmaDictionary {
+    private final Map<Integer, SiteLemmaIds> sites = new ConcurrentHashMap<>();
+
+    public int getId(int siteId, String lemma) {
+        SiteLemmaIds ids = sites.get(siteId);
+        return ids == null ? 0 : ids.get(lemma);
+    }
+
+    public void put(int siteId, String lemma, int id) {
+        sites.computeIfAbsent(siteId, s -> new SiteLemmaIds()).put(lemma, id);
+    }
+
+    public void evict(int siteId, String lemma) {
+        SiteLemmaIds ids = sites.get(siteId);
+        if (ids != null) ids.put(lemma, 0);
+    }
+
+    public void removeSite(int siteId) {
+        sites.remove(siteId);
+    }
+
+    /**
+     * Открытая адресация с линейным пробированием; удалённая лемма остаётся ключом со значением 0.
+     */
+    private static final class SiteLemmaIds {
+        private String[] keys = new String[1024];
+        private int[] ids = new int[1024];
+        private int size;
+
+        synchronized int get(String lemma) {
+            int mask = keys.length - 1;
+            int slot = mix(lemma.hashCode()) & mask;
+            while (keys[slot] != null) {
+                if (keys[slot].equals(lemma)) return ids[slot];
+                slot = (slot + 1) & mask;
+            }
+            return 0;
+        }
+
+        synchronized void put(String lemma, int id) {
+            int mask = keys.length - 1;
+            int slot = mix(lemma.hashCode()) & mask;
+            while (keys[slot] != null) {
+                if (keys[slot].equals(lemma)) {
+                    ids[slot] = id;
+                    return;
+                }
+                slot = (slot + 1) & mask;
+            }
+            if (id == 0) return;
+            keys[slot] = lemma;
+            ids[slot] = id;
+            if (++size * 2 > keys.length) grow();
+        }
+
+        private void grow() {
+            String[] oldKeys = keys;
+            int[] oldIds = ids;
+            keys = new String[oldKeys.length * 2];
+            ids = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] == null) continue;
+                int slot = mix(oldKeys[i].hashCode()) & mask;
+                while (keys[slot] != null) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                ids[slot] = oldIds[i];
+            }
+        }
+
+        private static int mix(int hash) {
+            int h = hash * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
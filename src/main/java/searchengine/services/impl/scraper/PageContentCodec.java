@@ -0,0 +1,83 @@
+package searchengine.services.impl.scraper;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+import searchengine.config.StorageSettings;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Кодирует тело страницы для page_content. Первый байт — способ хранения,
+ * поэтому строки, записанные в разных режимах, читаются одинаково.
+ */
+@Component
+@RequiredArgsConstructor
+public class PageContentCodec {
+    private static final byte RAW = 0;
+    private static final byte DEFLATE = 1;
+
+    private final StorageSettings storageSettings;
+
+    public byte[] encode(String content) {
+        byte[] raw = content.getBytes(StandardCharsets.UTF_8);
+        if (storageSettings.getContentCompression() == StorageSettings.ContentCompression.DEFLATE) {
+            return withHeader(DEFLATE, deflate(raw));
+        }
+        return withHeader(RAW, raw);
+    }
+
+    public String decode(byte[] body) {
+        if (body == null || body.length == 0) return "";
+        return switch (body[0]) {
+            case RAW -> new String(body, 1, body.length - 1, StandardCharsets.UTF_8);
+            case DEFLATE -> new String(inflate(body), StandardCharsets.UTF_8);
+            default -> throw new IllegalStateException("Unknown page content encoding: " + body[0]);
+        };
+    }
+
+    private byte[] deflate(byte[] raw) {
+        Deflater deflater = new Deflater(storageSettings.getCompressionLevel());
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(Math.max(64, raw.length / 4));
+            byte[] buf = new byte[8192];
+            while (!deflater.finished()) {
+                out.write(buf, 0, deflater.deflate(buf));
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] body) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(body, 1, body.length - 1);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(body.length * 4);
+            byte[] buf = new byte[8192];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buf);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+                out.write(buf, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("Corrupted page content", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static byte[] withHeader(byte header, byte[] data) {
+        byte[] body = new byte[data.length + 1];
+        body[0] = header;
+        System.arraycopy(data, 0, body, 1, data.length);
+        return body;
+    }
+}
@@ -0,0 +1,274 @@
+package searchengine.services.impl.scraper;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpHeaders;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Асинхронная загрузка страниц через общий HttpClient (соединения переиспользуются)
+ * с общим ограничением числа одновременных запросов и адаптивным планировщиком
+ * на каждый хост ({@link HostThrottle}: ведро токенов и окно AIMD).
+ * Блокирующий {@link #fetch(String)} ждёт через ForkJoinPool.managedBlock,
+ * так что пул обхода добавляет потоки на время ожидания сети и не простаивает;
+ * он же повторяет запрос при 429/5xx и сбоях соединения с экспоненциальной
+ * паузой со случайным разбросом или с паузой из Retry-After.
+ */
+@Log4j2
+@Component
+public class PageFetcher {
+    private static final long MAX_RETRY_AFTER_MS = 120_000;
+
+    private final CrawlerSettings settings;
+    private final MeterRegistry meterRegistry;
+    private final HttpClient client;
+    private final Semaphore globalPermits;
+    private final Map<String, HostThrottle> hosts = new ConcurrentHashMap<>();
+
+    public PageFetcher(CrawlerSettings settings, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+        this.globalPermits = new Semaphore(settings.getMaxConnections());
+        this.client = HttpClient.newBuilder()
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .connectTimeout(Duration.ofMillis(settings.getTimeoutMs()))
+                .build();
+    }
+
+    public FetchResult fetch(String url) {
+        return fetch(url, null, null);
+    }
+
+    /**
+     * Условный запрос: валидаторы из прошлого обхода уходят в If-None-Match
+     * и If-Modified-Since, неизменившаяся страница вернётся с кодом 304 без тела.
+     */
+    public FetchResult fetch(String url, String etag, String lastModified) {
+        FetchBlocker blocker = new FetchBlocker(url, etag, lastModified);
+        try {
+            ForkJoinPool.managedBlock(blocker);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return FetchResult.failed(url, "Interrupted");
+        }
+        return blocker.result;
+    }
+
+    public CompletableFuture<FetchResult> fetchAsync(String url) throws InterruptedException {
+        return fetchAsync(url, null, null);
+    }
+
+    /**
+     * Один запрос без повторов; ждёт места у хоста и в общем лимите.
+     */
+    public CompletableFuture<FetchResult> fetchAsync(String url, String etag, String lastModified)
+            throws InterruptedException {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.completedFuture(FetchResult.failed(url, e.getMessage()));
+        }
+        HostThrottle host = acquire(uri);
+        HttpRequest request = request(uri, host, etag, lastModified).build();
+        long started = System.nanoTime();
+        return client.sendAsync(request, HttpResponse.BodyHandlers.ofByteArray())
+                .handle((response, ex) -> {
+                    globalPermits.release();
+                    if (ex != null) {
+                        host.release(System.nanoTime() - started, true, 0);
+                        Throwable cause = ex instanceof CompletionException && ex.getCause() != null ? ex.getCause() : ex;
+                        log.warn("Fetch failed for {}: {}", url, cause.toString());
+                        return FetchResult.failed(url, String.valueOf(cause.getMessage()));
+                    }
+                    host.release(System.nanoTime() - started, isOverloaded(response.statusCode()),
+                            retryAfterNanos(response.statusCode(), response.headers()));
+                    // после редиректов — конечный адрес: от него считаются относительные ссылки
+                    return new FetchResult(response.uri().toString(), response.statusCode(), response.body(),
+                            response.headers(), null);
+                });
+    }
+
+    /**
+     * Загрузка с чтением тела потоком, без буфера на весь ответ (sitemap, robots.txt).
+     * Тело отдаётся в reader только при коде 200. Место у хоста и в общем лимите
+     * освобождается, как только пришли заголовки, — долгий разбор тела не считается
+     * задержкой хоста.
+     *
+     * @return код ответа
+     */
+    public int stream(String url, BodyReader reader) throws IOException, InterruptedException {
+        URI uri;
+        try {
+            uri = URI.create(url);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Bad URL " + url, e);
+        }
+        HostThrottle host = acquire(uri);
+        long started = System.nanoTime();
+        HttpResponse<InputStream> response;
+        try {
+            response = client.send(request(uri, host, null, null).build(), HttpResponse.BodyHandlers.ofInputStream());
+        } catch (IOException | RuntimeException e) {
+            globalPermits.release();
+            host.release(System.nanoTime() - started, true, 0);
+            throw e;
+        } catch (InterruptedException e) {
+            globalPermits.release();
+            host.cancel();
+            throw e;
+        }
+        int status = response.statusCode();
+        globalPermits.release();
+        host.release(System.nanoTime() - started, isOverloaded(status), retryAfterNanos(status, response.headers()));
+        try (InputStream body = response.body()) {
+            if (status == 200) {
+                reader.read(body);
+            }
+        }
+        return status;
+    }
+
+    /**
+     * Ограничивает частоту запросов к хосту сайта, например по Crawl-delay из robots.txt.
+     */
+    public void limitHostRate(String url, long delayMs) {
+        try {
+            host(URI.create(url)).limitRate(delayMs);
+        } catch (IllegalArgumentException e) {
+            log.warn("Cannot limit rate for bad URL {}", url);
+        }
+    }
+
+    @FunctionalInterface
+    public interface BodyReader {
+        void read(InputStream body) throws IOException;
+    }
+
+    private HostThrottle acquire(URI uri) throws InterruptedException {
+        HostThrottle host = host(uri);
+        host.acquire();
+        try {
+            globalPermits.acquire();
+        } catch (InterruptedException e) {
+            host.cancel();
+            throw e;
+        }
+        return host;
+    }
+
+    private HostThrottle host(URI uri) {
+        return hosts.computeIfAbsent(hostKey(uri), h -> new HostThrottle(h, settings, meterRegistry));
+    }
+
+    private HttpRequest.Builder request(URI uri, HostThrottle host, String etag, String lastModified) {
+        HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                .timeout(Duration.ofMillis(host.timeoutMs()))
+                .header("User-Agent", settings.getUserAgent())
+                .GET();
+        if (settings.getReferrer() != null && !settings.getReferrer().isBlank()) {
+            request.header("Referer", settings.getReferrer());
+        }
+        if (etag != null) request.header("If-None-Match", etag);
+        if (lastModified != null) request.header("If-Modified-Since", lastModified);
+        return request;
+    }
+
+    private static boolean isOverloaded(int status) {
+        return status == 429 || status == 503;
+    }
+
+    private static boolean isRetryable(FetchResult result) {
+        int status = result.statusCode();
+        return result.isFailed() || status == 429 || status == 502 || status == 503 || status == 504;
+    }
+
+    /**
+     * Retry-After в секундах или HTTP-дате; учитывается только у 429 и 503.
+     */
+    private static long retryAfterNanos(int status, HttpHeaders headers) {
+        if (!isOverloaded(status) || headers == null) return 0;
+        String value = headers.firstValue("Retry-After").orElse(null);
+        if (value == null || value.isBlank()) return 0;
+        long ms;
+        try {
+            ms = Long.parseLong(value.trim()) * 1000;
+        } catch (NumberFormatException e) {
+            try {
+                ms = ZonedDateTime.parse(value.trim(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant().toEpochMilli()
+                        - System.currentTimeMillis();
+            } catch (DateTimeParseException ignored) {
+                return 0;
+            }
+        }
+        return TimeUnit.MILLISECONDS.toNanos(Math.max(0, Math.min(ms, MAX_RETRY_AFTER_MS)));
+    }
+
+    /**
+     * Пауза перед повтором attempt (с 0): Retry-After, если есть, иначе
+     * base * 2^attempt со случайным разбросом в [половину, целое], не больше retry-max-delay-ms.
+     */
+    private long backoffMs(int attempt, FetchResult result) {
+        long retryAfter = TimeUnit.NANOSECONDS.toMillis(retryAfterNanos(result.statusCode(), result.headers()));
+        if (retryAfter > 0) return retryAfter;
+        long ceiling = Math.min(settings.getRetryMaxDelayMs(), settings.getRetryBaseDelayMs() << Math.min(attempt, 20));
+        return ceiling / 2 + ThreadLocalRandom.current().nextLong(ceiling / 2 + 1);
+    }
+
+    private static String hostKey(URI uri) {
+        return uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+    }
+
+    private final class FetchBlocker implements ForkJoinPool.ManagedBlocker {
+        private final String url;
+        private final String etag;
+        private final String lastModified;
+        private volatile FetchResult result;
+
+        private FetchBlocker(String url, String etag, String lastModified) {
+            this.url = url;
+            this.etag = etag;
+            this.lastModified = lastModified;
+        }
+
+        @Override
+        public boolean block() throws InterruptedException {
+            for (int attempt = 0; result == null; attempt++) {
+                FetchResult attemptResult;
+                try {
+                    attemptResult = fetchAsync(url, etag, lastModified).get();
+                } catch (ExecutionException e) {
+                    attemptResult = FetchResult.failed(url, String.valueOf(e.getCause()));
+                }
+                if (attempt >= settings.getMaxRetries() || !isRetryable(attemptResult)) {
+                    result = attemptResult;
+                    break;
+                }
+                long delay = backoffMs(attempt, attemptResult);
+                log.debug("Retry {} of {} in {} ms (status {})", attempt + 1, url, delay, attemptResult.statusCode());
+                TimeUnit.MILLISECONDS.sleep(delay);
+            }
+            return true;
+        }
+
+        @Override
+        public boolean isReleasable() {
+            return result != null;
+        }
+    }
+}
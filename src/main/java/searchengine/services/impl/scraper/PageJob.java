@@ -0,0 +1,79 @@
+package searchengine.services.impl.scraper;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.jsoup.nodes.Document;
+import searchengine.models.PageEntity;
+import searchengine.models.PageTextEntity;
+import searchengine.models.SiteEntity;
+import searchengine.services.impl.textWorkers.LemmaCounts;
+
+import java.time.Instant;
+
+/**
+ * Страница на пути через стадии конвейера: загрузка → разбор → леммы → запись.
+ * Каждая стадия дополняет задание своим результатом и отпускает то, что дальше не нужно.
+ */
+@Getter
+@Setter
+public class PageJob {
+    private final SiteEntity site;
+    /** Путь, под которым страница сохраняется; после редиректа в пределах сайта — конечный. */
+    private String path;
+    private final FrontierEntry entry;
+    private final Owner owner;
+
+    /** lastmod из sitemap, если URL пришёл оттуда. */
+    private Instant sitemapLastmod;
+    private PageEntity existing;
+    private FetchResult response;
+    private Document document;
+    private boolean store;
+    private String content;
+    private PageTextEntity pageText;
+    private int code;
+    private String etag;
+    private String lastModified;
+    private String contentHash;
+    private LemmaCounts lemmas;
+    /** Страница не дошла до записи: ошибка на одной из стадий или задание отброшено. */
+    private boolean failed;
+    /** Леммы и индекс страницы ждут записи пакетом в {@link IndexBatchWriter}. */
+    private boolean indexPending;
+
+    public PageJob(SiteEntity site, String path, FrontierEntry entry, Owner owner) {
+        this.site = site;
+        this.path = path;
+        this.entry = entry;
+        this.owner = owner;
+    }
+
+    public boolean needsLemmas() {
+        return store && code == 200 && pageText != null;
+    }
+
+    public String lemmaSource() {
+        return pageText.getTitle() + " " + pageText.getText();
+    }
+
+    void indexWritten() {
+        if (owner != null) owner.onIndexWritten(this);
+    }
+
+    /**
+     * Тот, кто поставил задание в конвейер. Конвейер гарантирует ровно один вызов
+     * {@link #onParsed} и ровно один {@link #onFinished} на задание, даже при ошибке.
+     */
+    public interface Owner {
+        boolean isCancelled();
+
+        /** Разбор закончен; документ может быть null, если страница не разобралась. */
+        void onParsed(PageJob job);
+
+        /** Задание покинуло конвейер: записано, отброшено или упало. */
+        void onFinished(PageJob job);
+
+        /** Пакет с леммами и индексом страницы записан; может прийти из другого потока после {@link #onFinished}. */
+        void onIndexWritten(PageJob job);
+    }
+}
@@ -0,0 +1,16 @@
+package searchengine.services.impl.scraper;
+
+import searchengine.services.impl.textWorkers.LemmaCounts;
+
+/**
+ * @param onWritten вызывается после того, как пакет со страницей записан в базу, может быть null
+ */
+public record PageLemmas(int pageId, LemmaCounts lemmas, Runnable onWritten) {
+    public PageLemmas(int pageId, LemmaCounts lemmas) {
+        this(pageId, lemmas, null);
+    }
+
+    void written() {
+        if (onWritten != null) onWritten.run();
+    }
+}
@@ -0,0 +1,54 @@
+package searchengine.services.impl.scraper;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.log4j.Log4j2;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Стадия конвейера: свой пул потоков и ограниченная очередь перед ним.
+ * {@link #submit} кладёт задачу прямо в очередь и ждёт, если та заполнена, —
+ * так медленная стадия притормаживает предыдущую, а не копит память.
+ * Метрики: indexing.pipeline.queue (глубина очереди) и indexing.pipeline.stage
+ * (время и число обработанных задач) с тегом stage.
+ */
+@Log4j2
+final class PipelineStage {
+    private final String name;
+    private final BlockingQueue<Runnable> queue;
+    private final ThreadPoolExecutor executor;
+    private final Timer timer;
+
+    PipelineStage(String name, int threads, int capacity, MeterRegistry meterRegistry) {
+        this.name = name;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, r -> {
+            Thread thread = new Thread(r, "pipeline-" + name + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.executor.prestartAllCoreThreads();
+        this.timer = Timer.builder("indexing.pipeline.stage").tag("stage", name).register(meterRegistry);
+        Gauge.builder("indexing.pipeline.queue", queue, BlockingQueue::size).tag("stage", name).register(meterRegistry);
+        Gauge.builder("indexing.pipeline.active", executor, ThreadPoolExecutor::getActiveCount)
+                .tag("stage", name).register(meterRegistry);
+    }
+
+    void submit(Runnable task) throws InterruptedException {
+        if (executor.isShutdown()) {
+            throw new IllegalStateException("Pipeline stage " + name + " is shut down");
+        }
+        queue.put(() -> timer.record(task));
+    }
+
+    void shutdown() {
+        log.info("Stopping pipeline stage {}, {} tasks dropped", name, executor.shutdownNow().size());
+    }
+}
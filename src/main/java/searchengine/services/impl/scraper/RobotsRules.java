@@ -0,0 +1,169 @@
+package searchengine.services.impl.scraper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Правила robots.txt для нашего User-Agent: Allow/Disallow с '*' и '$',
+ * Crawl-delay и ссылки Sitemap. Берётся группа с самым длинным совпавшим токеном
+ * агента, иначе группа '*'. Из совпавших правил побеждает самое длинное,
+ * при равной длине — Allow.
+ */
+public final class RobotsRules {
+    public static final RobotsRules ALLOW_ALL = new RobotsRules(List.of(), 0, List.of());
+
+    private final List<Rule> rules;
+    private final long crawlDelayMs;
+    private final List<String> sitemaps;
+
+    private record Rule(String pattern, boolean allow) {
+    }
+
+    private RobotsRules(List<Rule> rules, long crawlDelayMs, List<String> sitemaps) {
+        this.rules = rules;
+        this.crawlDelayMs = crawlDelayMs;
+        this.sitemaps = sitemaps;
+    }
+
+    public long crawlDelayMs() {
+        return crawlDelayMs;
+    }
+
+    public List<String> sitemaps() {
+        return sitemaps;
+    }
+
+    /**
+     * @param path путь от корня хоста, начиная с '/', с query
+     */
+    public boolean isAllowed(String path) {
+        int bestLength = -1;
+        boolean allowed = true;
+        for (Rule rule : rules) {
+            int length = rule.pattern().length();
+            if (length < bestLength || !matches(rule.pattern(), path)) continue;
+            if (length > bestLength || rule.allow()) {
+                allowed = rule.allow();
+                bestLength = length;
+            }
+        }
+        return allowed;
+    }
+
+    public static RobotsRules parse(String text, String userAgent) {
+        String agent = userAgent.toLowerCase(Locale.ROOT);
+        List<String> sitemaps = new ArrayList<>();
+        List<Group> groups = new ArrayList<>();
+        Group group = null;
+        boolean inAgents = false;
+
+        for (String rawLine : text.split("\r\n|\r|\n")) {
+            int hash = rawLine.indexOf('#');
+            String line = (hash >= 0 ? rawLine.substring(0, hash) : rawLine).trim();
+            int colon = line.indexOf(':');
+            if (colon <= 0) continue;
+            String field = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            String value = line.substring(colon + 1).trim();
+
+            switch (field) {
+                case "sitemap" -> {
+                    if (!value.isEmpty()) sitemaps.add(value);
+                }
+                case "user-agent" -> {
+                    // подряд идущие User-Agent относятся к одной группе
+                    if (!inAgents) {
+                        group = new Group();
+                        groups.add(group);
+                        inAgents = true;
+                    }
+                    group.agents.add(value.toLowerCase(Locale.ROOT));
+                }
+                case "allow", "disallow" -> {
+                    inAgents = false;
+                    // пустой Disallow ничего не запрещает
+                    if (group != null && !value.isEmpty()) {
+                        group.rules.add(new Rule(value, field.equals("allow")));
+                    }
+                }
+                case "crawl-delay" -> {
+                    inAgents = false;
+                    if (group != null) group.crawlDelayMs = parseDelayMs(value);
+                }
+                default -> inAgents = false;
+            }
+        }
+
+        int bestMatch = 0;
+        for (Group g : groups) {
+            bestMatch = Math.max(bestMatch, g.matchLength(agent));
+        }
+        List<Rule> rules = new ArrayList<>();
+        long crawlDelayMs = 0;
+        for (Group g : groups) {
+            if (g.matchLength(agent) == bestMatch && (bestMatch > 0 || g.agents.contains("*"))) {
+                rules.addAll(g.rules);
+                crawlDelayMs = Math.max(crawlDelayMs, g.crawlDelayMs);
+            }
+        }
+        return new RobotsRules(List.copyOf(rules), crawlDelayMs, List.copyOf(sitemaps));
+    }
+
+    private static final class Group {
+        private final List<String> agents = new ArrayList<>();
+        private final List<Rule> rules = new ArrayList<>();
+        private long crawlDelayMs;
+
+        /**
+         * Длина самого длинного токена группы, входящего в наш User-Agent; 0 — не про нас.
+         */
+        private int matchLength(String agent) {
+            int best = 0;
+            for (String token : agents) {
+                if (!token.isEmpty() && !token.equals("*") && agent.contains(token)) {
+                    best = Math.max(best, token.length());
+                }
+            }
+            return best;
+        }
+    }
+
+    private static long parseDelayMs(String value) {
+        try {
+            return Math.max(0, Math.round(Double.parseDouble(value) * 1000));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Совпадение шаблона с началом пути: '*' — любая последовательность, '$' в конце — конец пути.
+     * Жадный разбор без рекурсии: при несовпадении возвращаемся к последней '*'
+     * и отдаём ей ещё один символ пути.
+     */
+    static boolean matches(String pattern, String path) {
+        boolean anchored = pattern.endsWith("$");
+        int end = anchored ? pattern.length() - 1 : pattern.length();
+        int p = 0;
+        int i = 0;
+        int afterStar = -1;
+        int starMatch = 0;
+        while (i < path.length()) {
+            if (p == end && !anchored) return true;
+            if (p < end && pattern.charAt(p) == '*') {
+                afterStar = ++p;
+                starMatch = i;
+            } else if (p < end && pattern.charAt(p) == path.charAt(i)) {
+                p++;
+                i++;
+            } else if (afterStar >= 0) {
+                p = afterStar;
+                i = ++starMatch;
+            } else {
+                return false;
+            }
+        }
+        while (p < end && pattern.charAt(p) == '*') p++;
+        return p == end;
+    }
+}
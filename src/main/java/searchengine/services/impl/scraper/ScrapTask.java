@@ -2,105 +2,269 @@ package searchengine.services.impl.scraper;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import searchengine.models.LemmaEntity;
-import searchengine.models.PageEntity;
+import searchengine.enums.IndexingMode;
 import searchengine.models.SiteEntity;
 import searchengine.models.SiteStatusType;
-import searchengine.repos.PageRepository;
 import searchengine.repos.SiteRepository;
 import searchengine.services.impl.indexing.GatesConfig;
+import searchengine.services.impl.indexing.SiteGenerations;
 
 import java.time.LocalDateTime;
 import java.util.*;
 import java.util.concurrent.CancellationException;
-import java.util.concurrent.RecursiveAction;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
+/**
+ * Корневая задача обхода сайта: кладёт корень в очередь обхода, запускает воркеров
+ * в общем пуле и ждёт, пока очередь не опустеет и конвейер не допишет все страницы сайта,
+ * после чего выставляет статус сайта. Воркеры только загружают страницы и передают их
+ * в {@link IndexingPipeline}; страница считается обработанной в очереди обхода,
+ * когда конвейер её разобрал и дочерние ссылки добавлены, а посещённой в журнале —
+ * только когда её данные записаны в базу. Перед обходом читается
+ * robots.txt, а очередь параллельно засевается из sitemap через {@link SiteSeeder}.
+ */
 @RequiredArgsConstructor
 @Log4j2
-public class ScrapTask extends RecursiveAction {
+public class ScrapTask implements Runnable, PageJob.Owner {
     private final SiteRepository siteRepo;
-    private final PageRepository pageRepo;
     private final SiteEntity siteEntity;
     private final SiteIndexingImpl siteIndexingImpl;
-    private final String url;
-    private final boolean isRootTask;
-    private final Set<String> visitedPath;
-    private final Map<PageEntity, Map<LemmaEntity, Integer>> errorLemmasTransaction;
+    private final CrawlFrontier frontier;
+    private final ExecutorService crawlPool;
+    private final int workers;
     private final ActiveTasks activeTaskCount;
     private final GatesConfig gatesConfig;
+    private final CrawlStats crawlStats;
+    private final IndexingMode mode;
+    private final IndexingPipeline pipeline;
+    private final SiteGenerations siteGenerations;
+    private final SiteSeeder seeder;
+    private final HtmlParser htmlParser;
+    private final List<Future<?>> workerFutures = Collections.synchronizedList(new ArrayList<>());
+    private final ActiveTasks pagesInPipeline = new ActiveTasks();
+    private volatile int rootStatus;
+    private volatile boolean cancelled;
 
     @Override
-    protected void compute() {
-        if (Thread.currentThread().isInterrupted()) return;
+    public void run() {
         activeTaskCount.inc();
+        try {
+            RobotsRules robots = seeder.applyRobots(siteEntity, frontier);
+            frontier.offer("", 0);
+            startSeeding(robots);
+            for (int i = 0; i < workers; i++) {
+                workerFutures.add(crawlPool.submit(this::drainFrontier));
+            }
+            for (Future<?> future : List.copyOf(workerFutures)) {
+                awaitWorker(future);
+            }
+            pagesInPipeline.awaitZero();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        } catch (RejectedExecutionException e) {
+            log.warn("Crawl pool rejected workers for site {}", siteEntity.getName());
+        } finally {
+            log.info("Finishing processing for site: {}", siteEntity.getName());
+            log.info("Crawl stats: {}", crawlStats);
+            String flushError = flushPipeline();
+            flushCheckpoint();
+            endProcessing(flushError);
+            activeTaskCount.decAndSignal();
+        }
+    }
+
+    public void cancel() {
+        cancelled = true;
+        frontier.close();
+        synchronized (workerFutures) {
+            workerFutures.forEach(future -> future.cancel(true));
+        }
+    }
 
+    /**
+     * Засев из sitemap идёт параллельно с обходом; пока он не закончится,
+     * очередь не считается исчерпанной.
+     */
+    private void startSeeding(RobotsRules robots) {
+        frontier.hold();
         try {
-            log.debug("Task started for URL: {}", url);
+            workerFutures.add(crawlPool.submit(() -> {
+                try {
+                    seeder.seedFromSitemaps(siteEntity, frontier, robots);
+                } finally {
+                    frontier.release();
+                }
+            }));
+        } catch (RejectedExecutionException e) {
+            frontier.release();
+            throw e;
+        }
+    }
 
-            visitedPath.add(url);
-            HtmlParser htmlParser = new HtmlParser(url, siteEntity);
+    private void awaitWorker(Future<?> future) {
+        try {
+            future.get();
+        } catch (CancellationException e) {
+            log.debug("Crawl worker cancelled for site {}", siteEntity.getName());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            cancel();
+        } catch (ExecutionException e) {
+            log.error("Crawl worker crashed for site {}", siteEntity.getName(), e.getCause());
+        }
+    }
 
-            Set<String> discoveredUrls = htmlParser.getPaths();
+    private void drainFrontier() {
+        try {
+            FrontierEntry entry;
+            while (!Thread.currentThread().isInterrupted() && (entry = frontier.take()) != null) {
+                processEntry(entry);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
 
-            processDiscoveredUrls(discoveredUrls);
+    private void processEntry(FrontierEntry entry) {
+        String url = entry.path();
+        PageJob job = new PageJob(siteEntity, url, entry, this);
+        job.setSitemapLastmod(frontier.takeLastmod(url));
+        pagesInPipeline.inc();
+        activeTaskCount.inc();
+        boolean submitted = false;
+        boolean skipped = false;
+        try {
+            log.debug("Task started for URL: {}", url);
 
-            siteIndexingImpl.getPageAndSave(url, siteEntity);
+            if (mode == IndexingMode.RESUME) {
+                siteIndexingImpl.discardUnfinished(url, siteEntity);
+            }
+            siteIndexingImpl.fetch(job, mode == IndexingMode.INCREMENTAL);
+            if (url.isEmpty()) {
+                rootStatus = job.getResponse().statusCode();
+            }
+            if (!followRedirect(job)) {
+                log.debug("Redirect target of {} is crawled on its own", url);
+                skipped = true;
+                return;
+            }
+            crawlStats.recordFetch(url);
+            if (Thread.currentThread().isInterrupted()) return;
+            pipeline.submit(job);
+            submitted = true;
 
-            log.debug("Task completed for URL: {}", url);
-            log.debug("Task count after the URLs completing: {}", activeTaskCount.count.get());
+            log.debug("Task submitted for URL: {}", url);
         } catch (Exception e) {
             log.error("Error processing URL: {}", url, e);
         } finally {
-            if (isRootTask) {
-                log.info("Finishing processing for site: {}", siteEntity.getName());
-                endProcessing();
+            if (!submitted) {
+                job.setFailed(!skipped);
+                onParsed(job);
+                onFinished(job);
             }
             activeTaskCount.decAndSignal();
-            log.debug("Task count after decrement count: {}", activeTaskCount.count.get());
         }
     }
 
-    private void processDiscoveredUrls(Set<String> urls) {
-        if (Thread.currentThread().isInterrupted()) return;
-
-        List<ScrapTask> tasks = urls.stream()
-                .filter(visitedPath::add)
-                .map(childUrl -> new ScrapTask(
-                        siteRepo,
-                        pageRepo,
-                        siteEntity,
-                        siteIndexingImpl,
-                        childUrl,
-                        false,
-                        visitedPath,
-                        errorLemmasTransaction,
-                        activeTaskCount,
-                        gatesConfig
-                ))
-                .toList();
+    /**
+     * Новая страница, пришедшая редиректом на другой путь того же сайта, сохраняется
+     * под конечным путём. Если этот путь уже в обходе, страница пропускается как дубль.
+     *
+     * @return false, если страницу обрабатывать не нужно
+     */
+    private boolean followRedirect(PageJob job) {
+        if (job.getExisting() != null || job.getResponse().isFailed()) return true;
+        String finalPath = htmlParser.toPath(job.getResponse().url());
+        if (finalPath == null || finalPath.equals(job.getPath())
+                || (job.getPath().isEmpty() && finalPath.equals("/"))) {
+            return true;
+        }
+        if (!frontier.claim(finalPath)) return false;
+        job.setPath(finalPath);
+        return true;
+    }
 
+    @Override
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    @Override
+    public void onParsed(PageJob job) {
         try {
-            invokeAll(tasks);
-        } catch (CancellationException e) {
-            log.debug("invokeAll cancelled for URL: {}", url);
-        } catch (Exception e) {
-            log.error("Unexpected error in invokeAll for URL: {}", url, e);
+            if (!cancelled && job.getDocument() != null) {
+                for (String childUrl : htmlParser.getPaths(job.getDocument())) {
+                    frontier.offer(childUrl, job.getEntry().depth() + 1);
+                }
+            }
+        } finally {
+            frontier.release();
+        }
+    }
+
+    /**
+     * Страница без отложенного индекса записана целиком, когда покинула конвейер;
+     * отменённая или упавшая страница в журнале остаётся непосещённой.
+     */
+    @Override
+    public void onFinished(PageJob job) {
+        try {
+            if (!cancelled && !job.isFailed() && !job.isIndexPending()) {
+                frontier.markVisited(job.getEntry());
+            }
+        } finally {
+            pagesInPipeline.decAndSignal();
         }
     }
 
-    private void endProcessing() {
+    @Override
+    public void onIndexWritten(PageJob job) {
+        frontier.markVisited(job.getEntry());
+    }
+
+    /**
+     * @return текст ошибки, если леммы и индекс сайта не удалось дописать
+     */
+    private String flushPipeline() {
+        try {
+            pipeline.flush(siteEntity.getId());
+            return null;
+        } catch (RuntimeException e) {
+            log.error("Index of site {} is incomplete", siteEntity.getName(), e);
+            return "Не удалось записать индекс сайта: " + e.getCause();
+        }
+    }
+
+    private void flushCheckpoint() {
+        if (frontier.getCheckpoint() == null) return;
+        try {
+            frontier.getCheckpoint().flush();
+        } catch (RuntimeException e) {
+            log.error("Crawl frontier of site {} is not saved, the crawl cannot be resumed exactly",
+                    siteEntity.getName(), e);
+        }
+    }
+
+    private void endProcessing(String flushError) {
         synchronized (this) {
             if(gatesConfig.indexingGate().isRunning()) {
-                log.info("Set site \"{}\" status \"INDEXED\"", siteEntity.getName());
                 var fresh = siteRepo.findById(siteEntity.getId()).orElseThrow();
                 if (fresh.getStatus() != SiteStatusType.INDEXING) {
                     log.info("Skip setting INDEXED, current status is {}", fresh.getStatus());
                     gatesConfig.indexingGate().stop();
                     return;
                 }
-                fresh.setStatus(SiteStatusType.INDEXED);
-                siteRepo.save(fresh);
+                String error = flushError != null ? flushError : siteGenerations.incompleteReason(fresh, rootStatus);
+                if (error != null) {
+                    log.warn("Set site \"{}\" status \"FAILED\": {}", siteEntity.getName(), error);
+                    siteGenerations.fail(fresh, error);
+                } else {
+                    activate(fresh);
+                }
                 if(!siteRepo.existsByStatus(SiteStatusType.INDEXING)) {
                     gatesConfig.indexingGate().stop();
                 }
@@ -111,6 +275,24 @@ public class ScrapTask extends RecursiveAction {
         }
     }
 
+    /**
+     * Переключает поколение; если перенос индекса не удался, транзакция откатывается,
+     * поколение помечается FAILED, а прежнее остаётся активным.
+     */
+    private void activate(SiteEntity fresh) {
+        try {
+            siteGenerations.activate(fresh);
+        } catch (RuntimeException e) {
+            log.error("Failed to activate index of site {}", siteEntity.getName(), e);
+            siteGenerations.fail(fresh, "Не удалось перенести индекс сайта: " + e.getMessage());
+            return;
+        }
+        log.info("Set site \"{}\" status \"INDEXED\"", siteEntity.getName());
+        if (frontier.getCheckpoint() != null) {
+            frontier.getCheckpoint().clear();
+        }
+    }
+
     public void setManualStopStatus(SiteEntity site) {
         site.setStatus(SiteStatusType.FAILED);
         site.setStatusTime(LocalDateTime.now());
@@ -3,90 +3,395 @@ package searchengine.services.impl.scraper;
 import lombok.RequiredArgsConstructor;
 import lombok.SneakyThrows;
 import lombok.extern.log4j.Log4j2;
-import org.jsoup.Connection;
-import org.jsoup.HttpStatusException;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
 import org.springframework.stereotype.Service;
+import searchengine.models.PageContentEntity;
 import searchengine.models.PageEntity;
+import searchengine.models.PageTextEntity;
 import searchengine.models.SiteEntity;
+import searchengine.repos.PageContentRepository;
 import searchengine.repos.PageRepository;
+import searchengine.repos.PageTextRepository;
 import searchengine.repos.SiteRepository;
 import searchengine.services.SiteIndexing;
+import searchengine.services.impl.textWorkers.LemmaCounts;
+import searchengine.services.impl.textWorkers.PageTextExtractor;
 import searchengine.services.impl.textWorkers.TextLemmaParser;
 
 import java.io.IOException;
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Шаги обработки страницы. При обходе их по отдельности вызывают стадии
+ * {@link IndexingPipeline}, при переиндексации одной страницы — подряд в вызывающем потоке.
+ */
 @Service
 @RequiredArgsConstructor
 @Log4j2
 public class SiteIndexingImpl implements SiteIndexing {
     private final SiteRepository siteRepo;
     private final PageRepository pageRepo;
+    private final PageTextRepository pageTextRepo;
+    private final PageContentRepository pageContentRepo;
+    private final PageContentCodec pageContentCodec;
     private final IndexAndLemmaDBWorker indexAndLemmaDBWorker;
+    private final PageTextExtractor pageTextExtractor;
+    private final PageFetcher pageFetcher;
+    private final TextLemmaParser textLemmaParser;
+    private final IndexBatchWriter indexBatchWriter;
 
-    private Connection.Response fetchDocument(String path, SiteEntity siteEntity) {
+    public FetchResult fetchDocument(String path, SiteEntity siteEntity) {
         String url = getFullUrl(path, siteEntity);
         log.info("Fetch document by url \"{}\"", url);
-        try {
-            return Jsoup.connect(url)
-                    .userAgent("Mozilla/5.0")
-                    .referrer("https://lenta.ru/")
-                    .timeout(15000)
-                    .followRedirects(true)
-                    .execute();
-        } catch (IOException ex) {
-            saveUrlPage(path, ex.getMessage(), 500, siteEntity);
-            log.error(ex.getMessage());
+        return pageFetcher.fetch(url);
+    }
+
+    /**
+     * Стадия загрузки. При revalidate уже сохранённая страница запрашивается условно
+     * с валидаторами прошлого обхода (If-None-Match / If-Modified-Since), а если lastmod
+     * из sitemap не новее её Last-Modified, не запрашивается вовсе.
+     */
+    public void fetch(PageJob job, boolean revalidate) {
+        PageEntity existing = revalidate ? pageRepo.findByPathAndSiteEntity(job.getPath(), job.getSite()) : null;
+        job.setExisting(existing);
+        if (existing == null) {
+            job.setResponse(fetchDocument(job.getPath(), job.getSite()));
+            return;
         }
-        return null;
+        String url = getFullUrl(job.getPath(), job.getSite());
+        if (isUnchangedSince(existing, job.getSitemapLastmod())) {
+            log.debug("Unchanged according to sitemap: {}", url);
+            job.setResponse(FetchResult.notModified(url));
+            return;
+        }
+        log.info("Revalidate document by url \"{}\"", url);
+        job.setResponse(pageFetcher.fetch(url, existing.getEtag(), existing.getLastModified()));
     }
 
-    @Override
-    public void getPageAndSave(String path, SiteEntity siteEntity) {
-        try {
-            Connection.Response response = fetchDocument(path, siteEntity);
-            if (response != null) {
-                Document document = response.parse();
-                int statusCode = response.statusCode();
-                saveUrlPage(path, document.wholeText(), statusCode, siteEntity); // Сохраняем страницу с кодом 200
+    /**
+     * Стадия разбора: решает, что сохранять, и готовит документ для извлечения ссылок.
+     * На 304 или совпавший хэш тела страница не сохраняется, ссылки берутся
+     * из сохранённого HTML, а леммы и индекс остаются как есть. Так же сохранённая
+     * страница переживает сбой загрузки, 429/5xx и не-HTML ответ: её данные заменяются
+     * только разобранным успешным ответом (или 4xx — страницы больше нет).
+     */
+    public void parse(PageJob job) {
+        String path = job.getPath();
+        FetchResult response = job.getResponse();
+        PageEntity existing = job.getExisting();
+        if (existing != null && (response.isNotModified() || isUnchanged(existing, response))) {
+            log.debug("Content unchanged: {}", path);
+            if (!response.isNotModified()) {
+                updateValidators(existing, response);
             }
-        } catch (HttpStatusException e) {
-            log.error("HTTP error while fetching URL: {}, Status: {}", path, e.getStatusCode());
-            saveUrlPage(path, e.getMessage(), e.getStatusCode(), siteEntity);
-            throw new RuntimeException("HTTP error fetching URL: " + path, e);
+            job.setDocument(loadStoredDocument(existing, response.url()));
+            return;
+        }
+        if (existing != null && (isTransientFailure(response) || !response.isHtml() && response.statusCode() < 400)) {
+            log.warn("Keep stored page {}: status {}, {}", path, response.statusCode(),
+                    response.isFailed() ? response.error() : response.contentType());
+            job.setDocument(loadStoredDocument(existing, response.url()));
+            return;
+        }
+        if (response.isFailed()) {
+            log.error("IO error while fetching URL: {}: {}", path, response.error());
+            storeError(job, response.error(), 500);
+            return;
+        }
+        if (response.statusCode() >= 400) {
+            log.error("HTTP error while fetching URL: {}, Status: {}", path, response.statusCode());
+            storeError(job, "HTTP error fetching URL. Status=" + response.statusCode(), response.statusCode());
+            return;
+        }
+        if (!response.isHtml()) {
+            log.debug("Skip non-HTML content {} at {}", response.contentType(), path);
+            return;
+        }
+        try {
+            Document document = response.parse();
+            job.setDocument(document);
+            job.setContent(document.outerHtml());
+            job.setPageText(pageTextExtractor.extract(document));
+            job.setCode(response.statusCode());
+            job.setEtag(response.etag());
+            job.setLastModified(response.lastModified());
+            job.setContentHash(response.contentHash());
+            job.setStore(true);
         } catch (IOException e) {
-            log.error("IO error while fetching URL: {}", path, e);
-            saveUrlPage(path, e.getMessage(), 500, siteEntity);
-            throw new RuntimeException("IO error fetching URL: " + path, e);
+            log.error("IO error while parsing URL: {}", path, e);
+            if (existing != null) {
+                job.setDocument(loadStoredDocument(existing, response.url()));
+                return;
+            }
+            storeError(job, e.getMessage(), 500);
         }
     }
 
-    @SneakyThrows
+    /**
+     * Стадия записи. Изменившаяся страница переиндексируется под тем же id:
+     * сначала снимаются её старые леммы и индекс. Новые леммы и индекс уходят
+     * в {@link IndexBatchWriter} и пишутся пакетом вместе с другими страницами сайта.
+     */
+    public void persist(PageJob job) {
+        persist(job, true);
+    }
+
+    private void persist(PageJob job, boolean batched) {
+        if (!job.isStore()) return;
+        if (job.getExisting() != null) {
+            log.info("Content changed, reindexing \"{}\"", job.getPath());
+            indexAndLemmaDBWorker.removePageData(job.getExisting());
+        }
+        writePage(job, batched);
+    }
+
+    /**
+     * Все стадии подряд в текущем потоке; возвращает документ для извлечения ссылок.
+     */
+    public Document process(PageJob job) {
+        return process(job, false);
+    }
+
+    private Document process(PageJob job, boolean batched) {
+        parse(job);
+        if (job.needsLemmas()) {
+            job.setLemmas(textLemmaParser.lemmatizePage(job.lemmaSource()));
+        }
+        persist(job, batched);
+        return job.getDocument();
+    }
+
+    @Override
+    public void getPageAndSave(String path, SiteEntity siteEntity) {
+        savePage(path, fetchDocument(path, siteEntity), siteEntity);
+    }
+
+    /**
+     * Сохраняет уже загруженную страницу и возвращает разобранный документ,
+     * чтобы ссылки извлекались из того же ответа без повторной загрузки.
+     */
+    public Document savePage(String path, FetchResult response, SiteEntity siteEntity) {
+        PageJob job = new PageJob(siteEntity, path, null, null);
+        job.setResponse(response);
+        return process(job);
+    }
+
     @Override
     public void saveUrlPage(String checkingUrl, String pageContent, int statusCode, SiteEntity siteEntity) {
-        if (isNotContainsUrl(checkingUrl, siteEntity)) {
-            PageEntity page = new PageEntity(siteEntity, checkingUrl);
-            page.setContent(pageContent);
-            page.setCode(statusCode);
-            siteEntity.setStatusTime(LocalDateTime.now());
-            log.info("Saving url \"{}\"", checkingUrl);
-            pageRepo.save(page);
-            siteRepo.save(siteEntity);
-            if (statusCode == 200) {
-                indexAndLemmaDBWorker.saveTextToLemmasAndIndexes(pageContent, siteEntity, page);
+        saveUrlPage(checkingUrl, pageContent, null, statusCode, siteEntity);
+    }
+
+    @Override
+    public void saveUrlPage(String checkingUrl, String pageContent, PageTextEntity pageText,
+                            int statusCode, SiteEntity siteEntity) {
+        PageJob job = new PageJob(siteEntity, checkingUrl, null, null);
+        job.setContent(pageContent);
+        job.setPageText(pageText);
+        job.setCode(statusCode);
+        job.setStore(true);
+        if (job.needsLemmas()) {
+            job.setLemmas(textLemmaParser.lemmatizePage(job.lemmaSource()));
+        }
+        writePage(job, false);
+    }
+
+    @SneakyThrows
+    private void writePage(PageJob job, boolean batched) {
+        PageEntity existing = job.getExisting();
+        SiteEntity siteEntity = job.getSite();
+        if (existing == null && !isNotContainsUrl(job.getPath(), siteEntity)) return;
+
+        PageEntity page = existing != null ? existing : new PageEntity(siteEntity, job.getPath());
+        page.setCode(job.getCode());
+        page.setEtag(job.getEtag());
+        page.setLastModified(job.getLastModified());
+        page.setContentHash(job.getContentHash());
+        siteEntity.setStatusTime(LocalDateTime.now());
+        log.info("Saving url \"{}\"", job.getPath());
+        pageRepo.save(page);
+        pageContentRepo.save(new PageContentEntity(page.getId(), pageContentCodec.encode(job.getContent())));
+        siteRepo.save(siteEntity);
+        PageTextEntity pageText = job.getPageText();
+        if (pageText != null) {
+            pageText.setPageId(page.getId());
+            pageTextRepo.save(pageText);
+        } else if (existing != null) {
+            pageTextRepo.deleteById(page.getId());
+        }
+        LemmaCounts lemmas = job.getLemmas();
+        if (job.getCode() == 200 && lemmas != null) {
+            if (batched) {
+                job.setIndexPending(true);
+                indexBatchWriter.add(siteEntity.getId(), page.getId(), lemmas, job::indexWritten);
+            } else {
+                indexAndLemmaDBWorker.saveLemmasAndIndexes(lemmas, siteEntity, page);
             }
         }
     }
 
     @Override
     public void reindexPage(String path, SiteEntity siteEntity) {
-        PageEntity existingPage = pageRepo.findByPath(path);
-        indexAndLemmaDBWorker.removePageData(existingPage);
-        pageRepo.delete(existingPage);
+        PageEntity existingPage = pageRepo.findByPathAndSiteEntity(path, siteEntity);
+        if (existingPage != null) {
+            indexAndLemmaDBWorker.removePageData(existingPage);
+            pageRepo.delete(existingPage);
+        }
         getPageAndSave(path, siteEntity);
     }
 
+    /**
+     * Переиндексация многих страниц сайта пакетами по batchSize: страницы пакета загружаются
+     * параллельно в executor, старые данные загруженных снимаются set-based запросами,
+     * затем страницы разбираются, а леммы и индекс всего пакета пишутся одной записью
+     * {@link IndexBatchWriter}. Страница, которую не удалось загрузить (сбой, 429/5xx),
+     * остаётся в индексе как была.
+     *
+     * @return пути, которые не удалось переиндексировать
+     */
+    public List<String> reindexPages(List<String> paths, SiteEntity siteEntity, ExecutorService executor, int batchSize) {
+        List<String> failed = new ArrayList<>();
+        for (int from = 0; from < paths.size(); from += batchSize) {
+            List<String> batch = paths.subList(from, Math.min(paths.size(), from + batchSize));
+
+            List<Future<PageJob>> fetches = new ArrayList<>(batch.size());
+            for (String path : batch) {
+                fetches.add(executor.submit(() -> {
+                    PageJob job = new PageJob(siteEntity, path, null, null);
+                    job.setResponse(fetchDocument(path, siteEntity));
+                    return job;
+                }));
+            }
+            List<PageJob> fetched = new ArrayList<>(batch.size());
+            for (int i = 0; i < fetches.size(); i++) {
+                PageJob job = await(fetches.get(i), batch.get(i), failed);
+                if (job == null) continue;
+                if (isTransientFailure(job.getResponse())) {
+                    log.warn("Keep \"{}\": fetch failed with status {}", job.getPath(), job.getResponse().statusCode());
+                    failed.add(job.getPath());
+                } else {
+                    fetched.add(job);
+                }
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                fetches.forEach(future -> future.cancel(true));
+                failed.addAll(paths.subList(from + batch.size(), paths.size()));
+                return failed;
+            }
+            removePages(fetched.stream().map(PageJob::getPath).toList(), siteEntity);
+
+            List<Future<PageJob>> writes = new ArrayList<>(fetched.size());
+            for (PageJob job : fetched) {
+                writes.add(executor.submit(() -> {
+                    process(job, true);
+                    return job;
+                }));
+            }
+            for (int i = 0; i < writes.size(); i++) {
+                await(writes.get(i), fetched.get(i).getPath(), failed);
+            }
+            try {
+                indexBatchWriter.flush(siteEntity.getId());
+            } catch (IllegalStateException e) {
+                log.error("Index of reindexed pages is not written yet", e);
+                fetched.forEach(job -> failed.add(job.getPath()));
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                failed.addAll(paths.subList(from + batch.size(), paths.size()));
+                return failed;
+            }
+        }
+        return failed;
+    }
+
+    /**
+     * @return результат задачи или null, если она упала или ожидание прервано; путь тогда уходит в failed
+     */
+    private static PageJob await(Future<PageJob> future, String path, List<String> failed) {
+        if (Thread.currentThread().isInterrupted()) {
+            future.cancel(true);
+            failed.add(path);
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            future.cancel(true);
+        } catch (ExecutionException e) {
+            log.error("Error reindexing \"{}\"", path, e.getCause());
+        }
+        failed.add(path);
+        return null;
+    }
+
+    /**
+     * Удаляет страницу, записанную прерванным обходом: её индекс мог не дойти до базы,
+     * поэтому при продолжении обхода она загружается и записывается заново.
+     */
+    public void discardUnfinished(String path, SiteEntity siteEntity) {
+        removePages(List.of(path), siteEntity);
+    }
+
+    private void removePages(List<String> paths, SiteEntity siteEntity) {
+        List<PageEntity> existing = pageRepo.findAllBySiteEntityAndPathIn(siteEntity, paths);
+        if (existing.isEmpty()) return;
+        int[] pageIds = existing.stream().mapToInt(PageEntity::getId).toArray();
+        indexAndLemmaDBWorker.removePagesData(siteEntity.getId(), pageIds);
+        pageRepo.deleteAllByIdInBatch(existing.stream().map(PageEntity::getId).toList());
+    }
+
+    private static void storeError(PageJob job, String content, int code) {
+        job.setContent(content);
+        job.setCode(code);
+        job.setStore(true);
+    }
+
+    private static boolean isTransientFailure(FetchResult response) {
+        return response.isFailed() || response.statusCode() == 429 || response.statusCode() >= 500;
+    }
+
+    private static boolean isUnchanged(PageEntity page, FetchResult response) {
+        return !response.isFailed()
+                && response.statusCode() == page.getCode()
+                && page.getContentHash() != null
+                && page.getContentHash().equals(response.contentHash());
+    }
+
+    private static boolean isUnchangedSince(PageEntity page, Instant sitemapLastmod) {
+        if (sitemapLastmod == null || page.getLastModified() == null || page.getCode() != 200) return false;
+        try {
+            Instant stored = ZonedDateTime.parse(page.getLastModified(), DateTimeFormatter.RFC_1123_DATE_TIME).toInstant();
+            return !sitemapLastmod.isAfter(stored);
+        } catch (DateTimeParseException e) {
+            return false;
+        }
+    }
+
+    private void updateValidators(PageEntity page, FetchResult response) {
+        if (Objects.equals(page.getEtag(), response.etag())
+                && Objects.equals(page.getLastModified(), response.lastModified())) return;
+        page.setEtag(response.etag());
+        page.setLastModified(response.lastModified());
+        pageRepo.save(page);
+    }
+
+    private Document loadStoredDocument(PageEntity page, String url) {
+        return pageContentRepo.findById(page.getId())
+                .map(content -> Jsoup.parse(pageContentCodec.decode(content.getBody()), url))
+                .orElse(null);
+    }
+
     private boolean isNotContainsUrl(String path, SiteEntity siteEntity) {
         return pageRepo.findByPathAndSiteEntity(path, siteEntity) == null;
     }
@@ -95,4 +400,3 @@ public class SiteIndexingImpl implements SiteIndexing {
         return siteEntity.getUrl() + path;
     }
 }
-
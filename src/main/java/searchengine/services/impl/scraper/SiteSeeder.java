@@ -0,0 +1,150 @@
+package searchengine.services.impl.scraper;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.log4j.Log4j2;
+import org.springframework.stereotype.Component;
+import searchengine.config.CrawlerSettings;
+import searchengine.models.SiteEntity;
+
+import java.io.IOException;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Подготовка очереди обхода сайта: правила robots.txt ставятся фильтром путей,
+ * а URL из sitemap.xml (и вложенных через sitemap index) потоком кладутся в очередь
+ * вместе с lastmod, не дожидаясь, пока обход доберётся до них по ссылкам.
+ */
+@Log4j2
+@Component
+@RequiredArgsConstructor
+public class SiteSeeder {
+    private static final int MAX_ROBOTS_BYTES = 512 * 1024;
+    private static final int MAX_SITEMAPS = 1000;
+
+    private final PageFetcher pageFetcher;
+    private final CrawlerSettings settings;
+
+    /**
+     * Загружает robots.txt, ставит его Disallow фильтром путей очереди,
+     * а Crawl-delay — потолком частоты запросов к хосту в {@link PageFetcher}.
+     * Если файла нет или он недоступен, ограничений нет.
+     */
+    public RobotsRules applyRobots(SiteEntity site, CrawlFrontier frontier) {
+        if (!settings.isRespectRobots()) return RobotsRules.ALLOW_ALL;
+        RobotsRules robots = loadRobots(site);
+        String sitePath = sitePath(site);
+        frontier.setPathFilter(path -> robots.isAllowed(sitePath + (path.isEmpty() ? "/" : path)));
+        if (robots.crawlDelayMs() > 0) {
+            log.info("robots.txt of {} asks for Crawl-delay {} ms", site.getUrl(), robots.crawlDelayMs());
+            pageFetcher.limitHostRate(site.getUrl(), crawlDelayMs(robots));
+        }
+        return robots;
+    }
+
+    /**
+     * Задержка между запросами к сайту: Crawl-delay, но не больше max-crawl-delay-ms.
+     */
+    public long crawlDelayMs(RobotsRules robots) {
+        return Math.min(robots.crawlDelayMs(), settings.getMaxCrawlDelayMs());
+    }
+
+    /**
+     * Кладёт в очередь URL из sitemap'ов, перечисленных в robots.txt, или из /sitemap.xml.
+     *
+     * @return число добавленных в очередь URL
+     */
+    public int seedFromSitemaps(SiteEntity site, CrawlFrontier frontier, RobotsRules robots) {
+        if (!settings.isUseSitemaps()) return 0;
+        HtmlParser parser = new HtmlParser(site);
+        String host = host(site.getUrl());
+        Deque<String> pending = new ArrayDeque<>(robots.sitemaps());
+        if (pending.isEmpty()) {
+            pending.add(rootUrl(site) + "/sitemap.xml");
+        }
+        Set<String> visited = new HashSet<>();
+        int[] seeded = {0};
+        int[] read = {0};
+        int maxUrls = settings.getMaxSitemapUrls();
+
+        SitemapReader.Sink sink = new SitemapReader.Sink() {
+            @Override
+            public boolean url(String loc, Instant lastmod) {
+                String path = parser.toPath(loc);
+                if (path != null && frontier.offer(path, 1, lastmod)) {
+                    seeded[0]++;
+                }
+                return maxUrls <= 0 || ++read[0] < maxUrls;
+            }
+
+            @Override
+            public void sitemap(String loc) {
+                pending.add(loc);
+            }
+        };
+
+        while (!pending.isEmpty() && visited.size() < MAX_SITEMAPS && !Thread.currentThread().isInterrupted()) {
+            String sitemapUrl = pending.poll();
+            if (!host.equals(host(sitemapUrl)) || !visited.add(sitemapUrl)) continue;
+            if (maxUrls > 0 && read[0] >= maxUrls) break;
+            try {
+                int status = pageFetcher.stream(sitemapUrl, body -> SitemapReader.read(body, sink));
+                if (status != 200) {
+                    log.debug("Sitemap {} answered {}", sitemapUrl, status);
+                }
+            } catch (IOException e) {
+                log.warn("Failed to read sitemap {}: {}", sitemapUrl, e.getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        log.info("Seeded {} URLs of {} from {} sitemaps", seeded[0], site.getUrl(), visited.size());
+        return seeded[0];
+    }
+
+    private RobotsRules loadRobots(SiteEntity site) {
+        String url = rootUrl(site) + "/robots.txt";
+        String[] text = {null};
+        try {
+            int status = pageFetcher.stream(url,
+                    body -> text[0] = new String(body.readNBytes(MAX_ROBOTS_BYTES), StandardCharsets.UTF_8));
+            if (text[0] == null) {
+                log.debug("No robots.txt at {} (status {})", url, status);
+                return RobotsRules.ALLOW_ALL;
+            }
+            return RobotsRules.parse(text[0], settings.getUserAgent());
+        } catch (IOException e) {
+            log.warn("Failed to load {}: {}", url, e.getMessage());
+            return RobotsRules.ALLOW_ALL;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return RobotsRules.ALLOW_ALL;
+        }
+    }
+
+    private static String rootUrl(SiteEntity site) {
+        URI uri = URI.create(site.getUrl());
+        return uri.getScheme() + "://" + uri.getRawAuthority();
+    }
+
+    private static String sitePath(SiteEntity site) {
+        String path = URI.create(site.getUrl()).getPath();
+        if (path == null) return "";
+        return path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    private static String host(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? "" : host.toLowerCase(Locale.ROOT);
+        } catch (IllegalArgumentException e) {
+            return "";
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package searchengine.services.impl.scraper;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeParseException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Потоковый разбор sitemap.xml и sitemap index через StAX: документ не строится
+ * целиком, каждая запись отдаётся в {@link Sink} по мере чтения, так что
+ * sitemap на десятки тысяч URL читается в постоянной памяти. Сжатый gzip-файл
+ * распознаётся по сигнатуре. DTD и внешние сущности отключены.
+ */
+public final class SitemapReader {
+    private static final XMLInputFactory FACTORY = createFactory();
+
+    public interface Sink {
+        /**
+         * @return false, чтобы прекратить чтение
+         */
+        boolean url(String loc, Instant lastmod);
+
+        void sitemap(String loc);
+    }
+
+    private SitemapReader() {
+    }
+
+    public static void read(InputStream input, Sink sink) throws IOException {
+        InputStream stream = unzipIfNeeded(input);
+        XMLStreamReader reader = null;
+        try {
+            reader = FACTORY.createXMLStreamReader(stream);
+            boolean inUrl = false;
+            boolean inSitemap = false;
+            String loc = null;
+            String lastmod = null;
+            while (reader.hasNext()) {
+                int event = reader.next();
+                if (event == XMLStreamConstants.START_ELEMENT) {
+                    switch (reader.getLocalName()) {
+                        case "url" -> {
+                            inUrl = true;
+                            loc = null;
+                            lastmod = null;
+                        }
+                        case "sitemap" -> {
+                            inSitemap = true;
+                            loc = null;
+                        }
+                        case "loc" -> {
+                            if (inUrl || inSitemap) loc = reader.getElementText().trim();
+                        }
+                        case "lastmod" -> {
+                            if (inUrl) lastmod = reader.getElementText().trim();
+                        }
+                        default -> {
+                        }
+                    }
+                } else if (event == XMLStreamConstants.END_ELEMENT) {
+                    String name = reader.getLocalName();
+                    if (name.equals("url") && inUrl) {
+                        inUrl = false;
+                        if (loc != null && !loc.isEmpty() && !sink.url(loc, parseLastmod(lastmod))) return;
+                    } else if (name.equals("sitemap") && inSitemap) {
+                        inSitemap = false;
+                        if (loc != null && !loc.isEmpty()) sink.sitemap(loc);
+                    }
+                }
+            }
+        } catch (XMLStreamException e) {
+            throw new IOException("Malformed sitemap: " + e.getMessage(), e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException ignored) {
+                    // поток закроет вызывающий
+                }
+            }
+        }
+    }
+
+    /**
+     * Дата W3C Datetime: «2024-05-01» или «2024-05-01T10:00:00+03:00»; null, если не разобрать.
+     */
+    static Instant parseLastmod(String value) {
+        if (value == null || value.isEmpty()) return null;
+        try {
+            if (value.length() == 10) {
+                return LocalDate.parse(value).atStartOfDay(ZoneOffset.UTC).toInstant();
+            }
+            return OffsetDateTime.parse(value).toInstant();
+        } catch (DateTimeParseException e) {
+            return null;
+        }
+    }
+
+    private static InputStream unzipIfNeeded(InputStream input) throws IOException {
+        BufferedInputStream buffered = new BufferedInputStream(input);
+        buffered.mark(2);
+        int b1 = buffered.read();
+        int b2 = buffered.read();
+        buffered.reset();
+        return b1 == 0x1f && b2 == 0x8b ? new GZIPInputStream(buffered) : buffered;
+    }
+
+    private static XMLInputFactory createFactory() {
+        XMLInputFactory factory = XMLInputFactory.newFactory();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+        return factory;
+    }
+}
@@ -0,0 +1,240 @@
+package searchengine.services.impl.scraper;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Приводит абсолютный URL к пути страницы сайта за один проход по строке, без {@link URI}
+ * на каждую ссылку: хост и путь сайта разбираются один раз в конструкторе.
+ * Каноническая форма: без фрагмента, повторных слэшей и сегментов "." / "..",
+ * без меток трекинга в query и с отсортированными параметрами, чтобы одна страница
+ * не попадала в очередь обхода под разными адресами. %-кодирование нормализуется
+ * по RFC 3986: незарезервированные символы раскодируются, остальные %XX остаются
+ * закодированными с заглавными цифрами, а не-ASCII и недопустимые символы кодируются
+ * как UTF-8 — путь можно без изменений дописать к адресу сайта и загрузить.
+ */
+final class UrlNormalizer {
+    private static final Set<String> UNWANTED_EXTENSIONS = Set.of(
+            "jpg", "jpeg", "png", "gif", "bmp", "svg", "webp", "tiff",
+            "mp4", "avi", "mkv", "mov", "webm",
+            "mp3", "wav", "ogg",
+            "pdf", "doc", "docx", "xls", "xlsx", "ppt", "pptx", "txt",
+            "zip", "rar", "7z", "tar", "gz",
+            "exe", "bin", "msi", "sh",
+            "js", "css"
+    );
+    private static final int MAX_EXTENSION_LENGTH = 4;
+    private static final String RESERVED = ":/?#[]@!$&'()*+,;=";
+    private static final char[] HEX = "0123456789ABCDEF".toCharArray();
+
+    private static final Set<String> TRACKING_PARAMS = Set.of(
+            "gclid", "dclid", "gbraid", "wbraid", "fbclid", "yclid", "ysclid", "msclkid",
+            "igshid", "mc_cid", "mc_eid", "_openstat", "_ga", "_gl"
+    );
+
+    private final String host;
+    private final String sitePath;
+
+    UrlNormalizer(String siteUrl) {
+        URI uri = URI.create(siteUrl);
+        this.host = uri.getHost() == null ? "" : uri.getHost();
+        String path = uri.getPath() == null ? "" : uri.getPath();
+        this.sitePath = path.endsWith("/") ? path.substring(0, path.length() - 1) : path;
+    }
+
+    /**
+     * @return путь страницы относительно сайта (с "/" в начале и query, если есть)
+     * или null, если ссылка ведёт на другой хост, не на HTML-страницу или не разбирается
+     */
+    String normalize(String url) {
+        if (url == null) return null;
+        int authorityStart;
+        if (url.startsWith("https://")) {
+            authorityStart = 8;
+        } else if (url.startsWith("http://")) {
+            authorityStart = 7;
+        } else {
+            return null;
+        }
+
+        int length = url.length();
+        int authorityEnd = authorityStart;
+        while (authorityEnd < length) {
+            char c = url.charAt(authorityEnd);
+            if (c == '/' || c == '?' || c == '#') break;
+            authorityEnd++;
+        }
+        if (!isSameHost(url, authorityStart, authorityEnd)) return null;
+
+        int fragment = url.indexOf('#', authorityEnd);
+        int end = fragment < 0 ? length : fragment;
+        int query = url.indexOf('?', authorityEnd);
+        if (query > end) query = -1;
+        int pathEnd = query < 0 ? end : query;
+
+        String path = cleanPath(url, authorityEnd, pathEnd);
+        if (path == null || hasUnwantedExtension(path)) return null;
+        path = stripSitePath(path);
+
+        if (query >= 0) {
+            String params = canonicalQuery(url, query + 1, end);
+            if (params == null) return null;
+            if (!params.isEmpty()) path = path + '?' + params;
+        }
+        return path;
+    }
+
+    private static boolean hasUnwantedExtension(String path) {
+        int dot = path.lastIndexOf('.');
+        if (dot < 0 || path.indexOf('/', dot) >= 0) return false;
+        int extensionLength = path.length() - dot - 1;
+        if (extensionLength == 0 || extensionLength > MAX_EXTENSION_LENGTH) return false;
+        return UNWANTED_EXTENSIONS.contains(path.substring(dot + 1).toLowerCase(Locale.ROOT));
+    }
+
+    private boolean isSameHost(String url, int start, int end) {
+        int at = url.lastIndexOf('@', end - 1);
+        if (at >= start) start = at + 1;
+        int hostEnd = end;
+        if (start < end && url.charAt(start) == '[') {
+            int bracket = url.indexOf(']', start);
+            if (bracket < 0 || bracket >= end) return false;
+            hostEnd = bracket + 1;
+        } else {
+            int colon = url.indexOf(':', start);
+            if (colon >= 0 && colon < end) hostEnd = colon;
+        }
+        return hostEnd - start == host.length() && url.regionMatches(true, start, host, 0, host.length());
+    }
+
+    /**
+     * Путь [from, to) с нормализованным %-кодированием, схлопнутыми слэшами и разобранными "." / "..".
+     */
+    private static String cleanPath(String url, int from, int to) {
+        String raw = normalizeEscapes(url, from, to);
+        if (raw == null) return null;
+        StringBuilder path = new StringBuilder(raw.length() + 1);
+        int i = 0;
+        int n = raw.length();
+        while (i < n) {
+            while (i < n && raw.charAt(i) == '/') i++;
+            if (i >= n) break;
+            int segmentEnd = raw.indexOf('/', i);
+            if (segmentEnd < 0) segmentEnd = n;
+            int segmentLength = segmentEnd - i;
+            if (segmentLength == 1 && raw.charAt(i) == '.') {
+                // текущий каталог — пропускаем
+            } else if (segmentLength == 2 && raw.charAt(i) == '.' && raw.charAt(i + 1) == '.') {
+                path.setLength(Math.max(0, path.lastIndexOf("/")));
+            } else {
+                path.append('/').append(raw, i, segmentEnd);
+            }
+            i = segmentEnd;
+        }
+        if (n > 0 && raw.charAt(n - 1) == '/' && path.length() > 0) {
+            path.append('/');
+        }
+        return path.length() == 0 ? "/" : path.toString();
+    }
+
+    private String stripSitePath(String path) {
+        if (sitePath.isEmpty() || !path.startsWith(sitePath)) return path;
+        int n = sitePath.length();
+        if (path.length() == n) return "/";
+        return path.charAt(n) == '/' ? path.substring(n) : path;
+    }
+
+    /**
+     * Параметры query [from, to) без пустых и трекинговых, отсортированные;
+     * null, если в них битая %-последовательность.
+     */
+    private static String canonicalQuery(String url, int from, int to) {
+        List<String> params = new ArrayList<>();
+        int i = from;
+        while (i <= to) {
+            int ampersand = url.indexOf('&', i);
+            int paramEnd = ampersand < 0 || ampersand > to ? to : ampersand;
+            if (paramEnd > i && !isTracking(url, i, paramEnd)) {
+                String param = normalizeEscapes(url, i, paramEnd);
+                if (param == null) return null;
+                params.add(param);
+            }
+            i = paramEnd + 1;
+        }
+        if (params.isEmpty()) return "";
+        if (params.size() == 1) return params.get(0);
+        Collections.sort(params);
+        return String.join("&", params);
+    }
+
+    private static boolean isTracking(String url, int from, int to) {
+        if (url.regionMatches(true, from, "utm_", 0, 4)) return true;
+        int eq = url.indexOf('=', from);
+        int nameEnd = eq < 0 || eq > to ? to : eq;
+        return nameEnd - from <= 9 && TRACKING_PARAMS.contains(url.substring(from, nameEnd).toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Нормализует %-кодирование участка [from, to): %XX незарезервированного символа
+     * раскодируется, прочие %XX приводятся к заглавным цифрам, не-ASCII и недопустимые
+     * в URL символы кодируются как UTF-8. "+" остаётся как есть.
+     *
+     * @return null, если в участке битая %-последовательность
+     */
+    private static String normalizeEscapes(String s, int from, int to) {
+        int i = from;
+        while (i < to && isAllowed(s.charAt(i))) i++;
+        if (i == to) return s.substring(from, to);
+
+        StringBuilder out = new StringBuilder(to - from + 16);
+        out.append(s, from, i);
+        while (i < to) {
+            char c = s.charAt(i);
+            if (c == '%') {
+                if (i + 2 >= to) return null;
+                int hi = Character.digit(s.charAt(i + 1), 16);
+                int lo = Character.digit(s.charAt(i + 2), 16);
+                if (hi < 0 || lo < 0) return null;
+                char decoded = (char) ((hi << 4) | lo);
+                if (isUnreserved(decoded)) {
+                    out.append(decoded);
+                } else {
+                    appendEscaped(out, decoded);
+                }
+                i += 3;
+            } else if (isAllowed(c)) {
+                out.append(c);
+                i++;
+            } else {
+                int codePoint = s.codePointAt(i);
+                int length = Character.charCount(codePoint);
+                for (byte b : new String(Character.toChars(codePoint)).getBytes(StandardCharsets.UTF_8)) {
+                    appendEscaped(out, b & 0xFF);
+                }
+                i += length;
+            }
+        }
+        return out.toString();
+    }
+
+    private static void appendEscaped(StringBuilder out, int b) {
+        out.append('%').append(HEX[b >>> 4]).append(HEX[b & 0xF]);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+
+    /**
+     * Символ, допустимый в URL без кодирования: незарезервированный или разделитель RFC 3986.
+     */
+    private static boolean isAllowed(char c) {
+        return isUnreserved(c) || (c < 0x80 && RESERVED.indexOf(c) >= 0);
+    }
+}
@@ -0,0 +1,52 @@
+package searchengine.services.impl.searchImpl;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+import searchengine.services.impl.invertedIndex.DocumentStats;
+import searchengine.services.impl.invertedIndex.PageScorer;
+import searchengine.services.impl.invertedIndex.PostingsList;
+import searchengine.services.impl.invertedIndex.SiteIndex;
+
+import java.util.List;
+
+/**
+ * Okapi BM25. IDF лемм и коэффициенты нормировки считаются на запрос,
+ * длина страницы берётся из {@link DocumentStats} по id без обращения к БД.
+ * Оценки не зависят от максимума по сайту, поэтому сравнимы между сайтами.
+ */
+@Component
+@RequiredArgsConstructor
+@ConditionalOnProperty(prefix = "search-settings", name = "scorer", havingValue = "bm25", matchIfMissing = true)
+public class Bm25Scorer implements Scorer {
+    private final SearchSettings settings;
+
+    @Override
+    public PageScorer prepare(SiteIndex siteIndex, List<PostingsList> rarestFirst) {
+        DocumentStats stats = siteIndex.getStats();
+        int docCount = Math.max(stats.docCount(), 1);
+        float[] idf = new float[rarestFirst.size()];
+        for (int i = 0; i < idf.length; i++) {
+            int df = rarestFirst.get(i).size();
+            idf[i] = (float) Math.log(1d + (docCount - df + 0.5d) / (df + 0.5d));
+        }
+
+        float k1 = settings.getK1();
+        float b = settings.getB();
+        double avgLength = stats.averageLength();
+        float normBase = k1 * (1f - b);
+        float normSlope = avgLength > 0 ? (float) (k1 * b / avgLength) : 0f;
+        float tfBoost = k1 + 1f;
+
+        return (pageId, cursors) -> {
+            float norm = normBase + normSlope * stats.length(pageId);
+            float score = 0f;
+            for (int i = 0; i < cursors.length; i++) {
+                float tf = cursors[i].rank();
+                score += idf[i] * tf * tfBoost / (tf + norm);
+            }
+            return score;
+        };
+    }
+}
@@ -1,16 +1,19 @@
 package searchengine.services.impl.searchImpl;
 
 import lombok.RequiredArgsConstructor;
-import org.jsoup.Jsoup;
-import org.jsoup.nodes.Document;
-import org.jsoup.nodes.Element;
-import org.springframework.cache.annotation.Cacheable;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import searchengine.dto.index.SearchResultDto;
-
+import searchengine.config.SearchSettings;
 import searchengine.models.*;
 import searchengine.repos.*;
+import searchengine.services.impl.invertedIndex.InvertedIndex;
+import searchengine.services.impl.invertedIndex.PageFilter;
+import searchengine.services.impl.invertedIndex.PageHits;
+import searchengine.services.impl.invertedIndex.PageScorer;
+import searchengine.services.impl.invertedIndex.PositionMatcher;
+import searchengine.services.impl.invertedIndex.PostingsIntersector;
+import searchengine.services.impl.invertedIndex.PostingsList;
+import searchengine.services.impl.invertedIndex.SiteIndex;
 import searchengine.services.impl.textWorkers.TextLemmaParser;
 
 import java.util.*;
@@ -18,139 +21,173 @@ import java.util.*;
 @Service
 @RequiredArgsConstructor
 public class CachedSearchService {
-    private final LemmaRepository lemmaRepository;
-    private final IndexesRepository indexesRepository;
     private final SiteRepository siteRepository;
+    private final InvertedIndex invertedIndex;
     private final TextLemmaParser textLemmaParser;
-    private final SnippetGenerator snippetGenerator;
-
-    @Transactional
-    @Cacheable(value = "searchResults", key = "#query + '|' + (#siteUrl != null ? #siteUrl : '')")
-    public List<SearchResultDto> getAllResults(String query, String siteUrl) {
+    private final Scorer scorer;
+    private final SearchSettings searchSettings;
+    private final SearchResultCache searchResultCache;
+
+    /**
+     * Результаты берутся из {@link SearchResultCache}, если с момента расчёта
+     * не менялся индекс ни одного сайта из области поиска.
+     */
+    @Transactional(readOnly = true)
+    public SearchHits getAllResults(String query, String siteUrl) {
         List<String> lemmas = textLemmaParser
                 .sortWordsOnRussianAndEnglishWords(query)
-                .keySet().stream().toList();
+                .keys();
+        Collections.sort(lemmas);
 
         if (lemmas.isEmpty()) {
-            return List.of();
+            return SearchHits.empty(lemmas);
         }
 
+        List<Phrase> phrases = Phrase.parseAll(query, textLemmaParser);
+
         List<SiteEntity> sites = (siteUrl != null)
-                ? List.of(Objects.requireNonNull(siteRepository.findByUrl(siteUrl).orElse(null)))
-                : siteRepository.findAll();
+                ? List.of(Objects.requireNonNull(siteRepository.findActiveByUrl(siteUrl).orElse(null)))
+                : siteRepository.findAllByActiveTrue();
+
+        SearchResultCache.Key key = new SearchResultCache.Key(
+                lemmas, phrases.stream().map(Phrase::toKey).sorted().toList(), siteUrl);
+        long[] stamp = indexStamp(sites);
+        SearchHits cached = searchResultCache.get(key, stamp);
+        if (cached != null) {
+            return cached;
+        }
+        SearchHits hits = search(lemmas, phrases, sites);
+        searchResultCache.put(key, stamp, hits);
+        return hits;
+    }
 
-        Map<PageEntity, Float> relevanceMap = new HashMap<>();
+    private SearchHits search(List<String> lemmas, List<Phrase> phrases, List<SiteEntity> sites) {
+        Map<Integer, Float> relevanceMap = new HashMap<>();
+        Map<Integer, Long> versionMap = new HashMap<>();
         for (SiteEntity site : sites) {
-            List<LemmaEntity> filtered = getLemmaEntitiesFromSite(site, lemmas);
+            SiteIndex siteIndex = invertedIndex.getSite(site.getId());
+            if (siteIndex == null) continue;
+
+            List<PostingsList> filtered = getPostingsFromSite(siteIndex, lemmas);
             if (filtered == null) continue;
 
-            List<IndexesEntity> allIndexes = indexesRepository.findByLemmaEntityIn(filtered);
-            Map<LemmaEntity, Map<PageEntity, List<IndexesEntity>>> lemmaToPageIndexes = getLemmaEntityWithInfo(allIndexes);
-            Map<PageEntity, List<IndexesEntity>> pageToIndexesMap = findCommonPagesForAllLemmas(filtered, lemmaToPageIndexes);
-            if (pageToIndexesMap.isEmpty()) continue;
-            relevanceMap.putAll(getAbsRelevant(pageToIndexesMap));
+            PageHits hits = PostingsIntersector.intersect(filtered,
+                    phraseFilter(siteIndex, filtered, phrases),
+                    withProximity(scorer.prepare(siteIndex, filtered), filtered.size()));
+            for (int i = 0; i < hits.size(); i++) {
+                relevanceMap.put(hits.pageIds()[i], hits.scores()[i]);
+                versionMap.put(hits.pageIds()[i], siteIndex.version());
+            }
         }
 
-        return createSearchResultDto(relevanceMap, lemmas);
-    }
-
-    private List<SearchResultDto> createSearchResultDto(Map<PageEntity, Float> relevanceMap, List<String> lemmas) {
-        return relevanceMap.entrySet().stream()
-                .sorted((a, b) -> Float.compare(b.getValue(), a.getValue()))
-                .map(entry -> {
-                    PageEntity page = entry.getKey();
-                    SiteEntity site = page.getSiteEntity();
-                    String snippet = snippetGenerator.generateSnippet(page.getContent(), lemmas);
-                    String title = extractTitle(page.getContent());
-                    return new SearchResultDto(
-                            site.getUrl(), site.getName(),
-                            page.getPath(), title,
-                            snippet, entry.getValue()
-                    );
-                })
-                .toList();
+        return toSearchHits(normalize(relevanceMap), versionMap, lemmas);
     }
 
-    private static Map<PageEntity, Float> getAbsRelevant(Map<PageEntity, List<IndexesEntity>> pageToIndexesMap) {
-        Map<PageEntity, Float> relevanceMap = new HashMap<>();
-        float maxAbsRel = 0f;
-        Map<PageEntity, Float> absRelMap = new HashMap<>();
-        for (Map.Entry<PageEntity, List<IndexesEntity>> entry : pageToIndexesMap.entrySet()) {
-            float absRel = 0f;
-            for (IndexesEntity index : entry.getValue()) {
-                absRel += index.getRank();
-            }
-            absRelMap.put(entry.getKey(), absRel);
-            if (absRel > maxAbsRel) maxAbsRel = absRel;
+    private static SearchHits toSearchHits(Map<Integer, Float> relevanceMap, Map<Integer, Long> versionMap,
+                                           List<String> lemmas) {
+        int[] pageIds = new int[relevanceMap.size()];
+        float[] relevance = new float[relevanceMap.size()];
+        long[] versions = new long[relevanceMap.size()];
+        int i = 0;
+        for (Map.Entry<Integer, Float> entry : relevanceMap.entrySet()) {
+            pageIds[i] = entry.getKey();
+            relevance[i] = entry.getValue();
+            versions[i] = versionMap.get(entry.getKey());
+            i++;
         }
+        return new SearchHits(lemmas, pageIds, relevance, versions, i);
+    }
 
-        for (Map.Entry<PageEntity, Float> entry : absRelMap.entrySet()) {
-            float rel = entry.getValue() / maxAbsRel;
-            relevanceMap.put(entry.getKey(), rel);
+    /**
+     * Пары (id сайта, версия индекса) по возрастанию id.
+     */
+    private long[] indexStamp(List<SiteEntity> sites) {
+        int[] siteIds = sites.stream().mapToInt(SiteEntity::getId).sorted().toArray();
+        long[] stamp = new long[siteIds.length * 2];
+        for (int i = 0; i < siteIds.length; i++) {
+            SiteIndex siteIndex = invertedIndex.getSite(siteIds[i]);
+            stamp[2 * i] = siteIds[i];
+            stamp[2 * i + 1] = siteIndex != null ? siteIndex.version() : 0L;
         }
-        return relevanceMap;
+        return stamp;
     }
 
-    private static Map<PageEntity, List<IndexesEntity>> findCommonPagesForAllLemmas(
-            List<LemmaEntity> filtered, Map<LemmaEntity, Map<PageEntity, List<IndexesEntity>>> lemmaToPageIndexes) {
-        Map<PageEntity, List<IndexesEntity>> pageToIndexesMap = new HashMap<>();
-        boolean isFirst = true;
-        for (LemmaEntity lemma : filtered) {
-            Map<PageEntity, List<IndexesEntity>> pageMap = lemmaToPageIndexes.get(lemma);
-            if (pageMap == null) {
-                pageToIndexesMap.clear();
-                break;
-            }
-            if (isFirst) {
-                pageToIndexesMap.putAll(pageMap);
-                isFirst = false;
-            } else {
-                pageToIndexesMap.keySet().retainAll(pageMap.keySet());
-                pageToIndexesMap.replaceAll((p, v) -> {
-                    List<IndexesEntity> newList = new ArrayList<>(v);
-                    newList.addAll(pageMap.get(p));
-                    return newList;
-                });
+    /**
+     * Все фразы запроса должны стоять на странице подряд. Лемма фразы, отброшенная
+     * как слишком частая, из проверки выпадает, как служебное слово.
+     */
+    private static PageFilter phraseFilter(SiteIndex siteIndex, List<PostingsList> filtered, List<Phrase> phrases) {
+        List<int[][]> checks = new ArrayList<>(phrases.size());
+        for (Phrase phrase : phrases) {
+            int[] terms = new int[phrase.lemmas().length];
+            int[] offsets = new int[terms.length];
+            int kept = 0;
+            for (int i = 0; i < terms.length; i++) {
+                int term = filtered.indexOf(siteIndex.getPostings(phrase.lemmas()[i]));
+                if (term < 0) continue;
+                terms[kept] = term;
+                offsets[kept] = phrase.offsets()[i];
+                kept++;
             }
-            if (pageToIndexesMap.isEmpty()) {
-                break;
+            if (kept < 2) continue;
+            int base = offsets[0];
+            for (int i = 0; i < kept; i++) {
+                offsets[i] -= base;
             }
+            checks.add(new int[][] {Arrays.copyOf(terms, kept), Arrays.copyOf(offsets, kept)});
         }
-        return pageToIndexesMap;
+        if (checks.isEmpty()) return null;
+        return (pageId, cursors) -> {
+            for (int[][] check : checks) {
+                if (!PositionMatcher.containsPhrase(cursors, check[0], check[1])) return false;
+            }
+            return true;
+        };
     }
 
-    private static Map<LemmaEntity, Map<PageEntity, List<IndexesEntity>>> getLemmaEntityWithInfo(List<IndexesEntity> allIndexes) {
-        Map<LemmaEntity, Map<PageEntity, List<IndexesEntity>>> lemmaToPageIndexes = new HashMap<>();
-        for (IndexesEntity index : allIndexes) {
-            LemmaEntity lemma = index.getLemmaEntity();
-            PageEntity page = index.getPageEntity();
+    /**
+     * Чем теснее слова запроса стоят на странице, тем выше оценка:
+     * все слова подряд дают прибавку proximity-weight, каждое лишнее слово в окне её уменьшает.
+     */
+    private PageScorer withProximity(PageScorer base, int terms) {
+        float weight = searchSettings.getProximityWeight();
+        if (terms < 2 || weight <= 0f) return base;
+        return (pageId, cursors) -> {
+            float score = base.score(pageId, cursors);
+            int span = PositionMatcher.minSpan(cursors);
+            if (span == PositionMatcher.NO_SPAN) return score;
+            return score * (1f + weight / (1 + Math.max(0, span - terms)));
+        };
+    }
 
-            lemmaToPageIndexes
-                    .computeIfAbsent(lemma, l -> new HashMap<>())
-                    .computeIfAbsent(page, p -> new ArrayList<>())
-                    .add(index);
+    /**
+     * Делит оценки на общий максимум по всем сайтам, а не по каждому сайту отдельно.
+     */
+    private static Map<Integer, Float> normalize(Map<Integer, Float> relevanceMap) {
+        float maxAbsRel = 0f;
+        for (float score : relevanceMap.values()) {
+            if (score > maxAbsRel) maxAbsRel = score;
         }
-        return lemmaToPageIndexes;
+        if (maxAbsRel > 0f) {
+            float max = maxAbsRel;
+            relevanceMap.replaceAll((pageId, score) -> score / max);
+        }
+        return relevanceMap;
     }
 
-    private List<LemmaEntity> getLemmaEntitiesFromSite(SiteEntity site, List<String> lemmas) {
-        List<LemmaEntity> lemmaEntities = lemmaRepository.findByLemmaIn(lemmas, site.getId());
-        if (lemmaEntities.size() != lemmas.size()) return null;
+    private List<PostingsList> getPostingsFromSite(SiteIndex siteIndex, List<String> lemmas) {
+        List<PostingsList> postings = new ArrayList<>(lemmas.size());
+        for (String lemma : lemmas) {
+            PostingsList list = siteIndex.getPostings(lemma);
+            if (list == null) return null;
+            postings.add(list);
+        }
 
-        int maxPages = (int) (site.getSitePageEntities().size() * 0.85);
-        return lemmaEntities.stream()
-                .filter(l -> l.getFrequency() <= maxPages)
-                .sorted(Comparator.comparingInt(LemmaEntity::getFrequency))
+        int maxPages = (int) (siteIndex.getStats().docCount() * 0.85);
+        List<PostingsList> filtered = postings.stream()
+                .filter(p -> p.size() <= maxPages)
+                .sorted(Comparator.comparingInt(PostingsList::size))
                 .toList();
-    }
-
-    private String extractTitle(String content) {
-        try {
-            Document doc = Jsoup.parse(content);
-            Element titleEl = doc.selectFirst("title");
-            return titleEl != null ? titleEl.text() : "";
-        } catch (Exception e) {
-            return "";
-        }
+        return filtered.isEmpty() ? null : filtered;
     }
 }
@@ -0,0 +1,73 @@
+package searchengine.services.impl.searchImpl;
+
+import searchengine.services.impl.textWorkers.LemmaCounts;
+import searchengine.services.impl.textWorkers.TextLemmaParser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Фраза из запроса в кавычках: леммы в порядке слов и смещение каждой от первой.
+ * Служебные слова в лемму не превращаются, но позицию занимают, поэтому
+ * «дом у реки» ищется как «дом», через одно слово «река».
+ */
+public record Phrase(String[] lemmas, int[] offsets) {
+
+    public static List<Phrase> parseAll(String query, TextLemmaParser textLemmaParser) {
+        List<Phrase> phrases = new ArrayList<>();
+        int i = 0;
+        while (i < query.length()) {
+            char open = query.charAt(i);
+            char close = open == '"' ? '"' : open == '«' ? '»' : 0;
+            int end = close == 0 ? -1 : query.indexOf(close, i + 1);
+            if (end < 0) {
+                i++;
+                continue;
+            }
+            Phrase phrase = parse(query.substring(i + 1, end), textLemmaParser);
+            if (phrase != null) {
+                phrases.add(phrase);
+            }
+            i = end + 1;
+        }
+        return phrases;
+    }
+
+    /**
+     * Каноническая запись фразы для ключа кэша: «лемма@смещение» через пробел.
+     */
+    public String toKey() {
+        StringBuilder key = new StringBuilder();
+        for (int i = 0; i < lemmas.length; i++) {
+            if (i > 0) key.append(' ');
+            key.append(lemmas[i]).append('@').append(offsets[i]);
+        }
+        return key.toString();
+    }
+
+    private static Phrase parse(String text, TextLemmaParser textLemmaParser) {
+        LemmaCounts counts = textLemmaParser.lemmatizeWithPositions(text);
+        if (counts.size() == 0) return null;
+        // позиция в старших 32 битах, номер леммы в младших: сортировка даёт порядок слов
+        long[] words = new long[16];
+        List<String> lemmas = counts.keys();
+        int n = 0;
+        for (int l = 0; l < lemmas.size(); l++) {
+            for (int position : counts.positions(lemmas.get(l))) {
+                if (n == words.length) words = Arrays.copyOf(words, n * 2);
+                words[n++] = ((long) position << 32) | l;
+            }
+        }
+        if (n < 2) return null;
+        Arrays.sort(words, 0, n);
+        String[] ordered = new String[n];
+        int[] offsets = new int[n];
+        int first = (int) (words[0] >>> 32);
+        for (int w = 0; w < n; w++) {
+            ordered[w] = lemmas.get((int) words[w]);
+            offsets[w] = (int) (words[w] >>> 32) - first;
+        }
+        return new Phrase(ordered, offsets);
+    }
+}
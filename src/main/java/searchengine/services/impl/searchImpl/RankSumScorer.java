@@ -0,0 +1,21 @@
+package searchengine.services.impl.searchImpl;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import searchengine.services.impl.invertedIndex.PageScorer;
+import searchengine.services.impl.invertedIndex.PostingsList;
+import searchengine.services.impl.invertedIndex.SiteIndex;
+
+import java.util.List;
+
+/**
+ * Прежнее ранжирование: сумма частот лемм запроса на странице.
+ */
+@Component
+@ConditionalOnProperty(prefix = "search-settings", name = "scorer", havingValue = "rank-sum")
+public class RankSumScorer implements Scorer {
+    @Override
+    public PageScorer prepare(SiteIndex siteIndex, List<PostingsList> rarestFirst) {
+        return PageScorer.RANK_SUM;
+    }
+}
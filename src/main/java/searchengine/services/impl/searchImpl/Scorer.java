@@ -0,0 +1,16 @@
+package searchengine.services.impl.searchImpl;
+
+import searchengine.services.impl.invertedIndex.PageScorer;
+import searchengine.services.impl.invertedIndex.PostingsList;
+import searchengine.services.impl.invertedIndex.SiteIndex;
+
+import java.util.List;
+
+/**
+ * Функция ранжирования. Всё, что зависит только от запроса и сайта (IDF, средняя длина),
+ * считается один раз в {@link #prepare}, а возвращённый {@link PageScorer}
+ * вызывается на каждую найденную страницу.
+ */
+public interface Scorer {
+    PageScorer prepare(SiteIndex siteIndex, List<PostingsList> rarestFirst);
+}
@@ -0,0 +1,67 @@
+package searchengine.services.impl.searchImpl;
+
+import java.util.List;
+
+/**
+ * Все найденные страницы запроса с относительной релевантностью и версией индекса
+ * их сайта на момент поиска. Кэшируется отдельно от отрендеренных результатов
+ * вместе с уже ранжированным префиксом: следующие страницы выдачи берут его
+ * и не выбирают лучшие заново.
+ */
+public final class SearchHits {
+    private final List<String> lemmas;
+    private final int[] pageIds;
+    private final float[] relevance;
+    private final long[] versions;
+    private final int size;
+    private volatile int[] ranked = new int[0];
+
+    public SearchHits(List<String> lemmas, int[] pageIds, float[] relevance, long[] versions, int size) {
+        this.lemmas = lemmas;
+        this.pageIds = pageIds;
+        this.relevance = relevance;
+        this.versions = versions;
+        this.size = size;
+    }
+
+    public static SearchHits empty(List<String> lemmas) {
+        return new SearchHits(lemmas, new int[0], new float[0], new long[0], 0);
+    }
+
+    public List<String> lemmas() {
+        return lemmas;
+    }
+
+    public int[] pageIds() {
+        return pageIds;
+    }
+
+    public float[] relevance() {
+        return relevance;
+    }
+
+    /**
+     * Версия индекса сайта, к которому относится страница hit.
+     */
+    public long version(int hit) {
+        return versions[hit];
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Позиции k лучших результатов по убыванию релевантности. Ранжированный префикс
+     * запоминается и при нехватке достраивается с запасом вдвое.
+     */
+    public int[] ranked(int k) {
+        k = Math.min(k, size);
+        int[] prefix = ranked;
+        if (prefix.length < k) {
+            prefix = TopKSelector.select(this, Math.max(k, 2 * prefix.length));
+            ranked = prefix;
+        }
+        return prefix;
+    }
+}
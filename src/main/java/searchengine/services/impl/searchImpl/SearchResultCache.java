@@ -0,0 +1,76 @@
+package searchengine.services.impl.searchImpl;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import searchengine.config.SearchSettings;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Кэш найденных страниц. Ключ — отсортированный набор лемм, фразы и область поиска,
+ * поэтому «Бегать бег» и «бег бегать» делят одну запись. К записи приложен штамп
+ * (id сайта, версия его индекса) по всем сайтам области: запись, у которой версия
+ * хотя бы одного сайта сменилась, считается промахом и пересчитывается, а записи
+ * по другим сайтам остаются. Размер ограничен оценкой занимаемой памяти; статистика
+ * выгружается в метрики как cache.* с тегом cache=searchResults, устаревшие записи
+ * считаются в search.cache.stale.
+ */
+@Component
+public class SearchResultCache {
+    private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+    private final Cache<Key, Entry> cache;
+    private final Counter staleCounter;
+
+    public record Key(List<String> lemmas, List<String> phrases, String siteUrl) {
+    }
+
+    private record Entry(long[] stamp, SearchHits hits) {
+    }
+
+    public SearchResultCache(SearchSettings settings, MeterRegistry meterRegistry) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(settings.getResultCacheMaxBytes())
+                .weigher(SearchResultCache::weigh)
+                .expireAfterWrite(settings.getResultCacheTtlMinutes(), TimeUnit.MINUTES)
+                .recordStats()
+                .build();
+        this.staleCounter = meterRegistry.counter("search.cache.stale");
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "searchResults");
+    }
+
+    /**
+     * @return сохранённый результат или null, если его нет или индекс какого-то сайта с тех пор менялся
+     */
+    public SearchHits get(Key key, long[] stamp) {
+        Entry entry = cache.getIfPresent(key);
+        if (entry == null) return null;
+        if (!Arrays.equals(entry.stamp(), stamp)) {
+            staleCounter.increment();
+            cache.asMap().remove(key, entry);
+            return null;
+        }
+        return entry.hits();
+    }
+
+    public void put(Key key, long[] stamp, SearchHits hits) {
+        cache.put(key, new Entry(stamp, hits));
+    }
+
+    private static int weigh(Key key, Entry entry) {
+        int bytes = ENTRY_OVERHEAD_BYTES + entry.stamp().length * 8 + entry.hits().pageIds().length * 8;
+        for (String lemma : key.lemmas()) {
+            bytes += 2 * lemma.length() + 40;
+        }
+        for (String phrase : key.phrases()) {
+            bytes += 2 * phrase.length() + 40;
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,81 @@
+package searchengine.services.impl.searchImpl;
+
+import lombok.RequiredArgsConstructor;
+import org.jsoup.Jsoup;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import searchengine.models.PageEntity;
+import searchengine.models.PageTextEntity;
+import searchengine.models.SiteEntity;
+import searchengine.repos.PageContentRepository;
+import searchengine.repos.PageRepository;
+import searchengine.repos.PageTextRepository;
+import searchengine.services.impl.invertedIndex.InvertedIndex;
+import searchengine.services.impl.invertedIndex.SiteIndex;
+import searchengine.services.impl.scraper.PageContentCodec;
+import searchengine.services.impl.textWorkers.PageTextExtractor;
+
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+public class SearchResultRenderer {
+    private final PageRepository pageRepository;
+    private final PageTextRepository pageTextRepository;
+    private final PageContentRepository pageContentRepository;
+    private final PageContentCodec pageContentCodec;
+    private final PageTextExtractor pageTextExtractor;
+    private final SnippetGenerator snippetGenerator;
+    private final InvertedIndex invertedIndex;
+
+    /**
+     * Заголовок и сниппет страницы без релевантности, которая у каждого запроса своя.
+     */
+    public record PageSummary(String site, String siteName, String uri, String title, String snippet) {
+    }
+
+    /**
+     * @param version версия индекса сайта страницы: после переиндексации сайта
+     *                сохранённые заголовок и сниппет его страниц больше не используются
+     */
+    @Transactional(readOnly = true)
+    @Cacheable(value = "searchSnippets", key = "#pageId + '|' + #version + '|' + #lemmas", unless = "#result == null")
+    public PageSummary summarize(int pageId, long version, List<String> lemmas) {
+        PageEntity page = pageRepository.findById(pageId).orElse(null);
+        if (page == null) return null;
+
+        // страницы, проиндексированные до появления page_text, разбираем по старинке
+        PageTextEntity pageText = pageTextRepository.findById(pageId)
+                .orElseGet(() -> pageTextExtractor.extract(Jsoup.parse(loadContent(pageId))));
+
+        SiteEntity site = page.getSiteEntity();
+        String snippet = snippetGenerator.generateSnippet(pageText, lemmas, lemmaPositions(site, pageId, lemmas));
+        return new PageSummary(
+                site.getUrl(), site.getName(),
+                page.getPath(), pageText.getTitle(),
+                snippet
+        );
+    }
+
+    /**
+     * Позиции лемм запроса на странице из резидентного индекса или null, если их там нет.
+     */
+    private int[][] lemmaPositions(SiteEntity site, int pageId, List<String> lemmas) {
+        SiteIndex siteIndex = invertedIndex.getSite(site.getId());
+        if (siteIndex == null) return null;
+        int[][] positions = new int[lemmas.size()][];
+        boolean any = false;
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = siteIndex.positions(lemmas.get(i), pageId);
+            any |= positions[i] != null;
+        }
+        return any ? positions : null;
+    }
+
+    private String loadContent(int pageId) {
+        return pageContentRepository.findById(pageId)
+                .map(content -> pageContentCodec.decode(content.getBody()))
+                .orElse("");
+    }
+}
@@ -5,23 +5,35 @@ import org.springframework.stereotype.Service;
 import searchengine.dto.index.SearchResultDto;
 import searchengine.dto.statistics.SearchResponse;
 
+import java.util.ArrayList;
 import java.util.List;
 
 @Service
 @RequiredArgsConstructor
 public class SearchService {
     private final CachedSearchService cachedSearchService;
+    private final SearchResultRenderer searchResultRenderer;
 
     public SearchResponse search(String query, String siteUrl, int offset, int limit) {
-        List<SearchResultDto> allResults = cachedSearchService.getAllResults(query, siteUrl);
-        int total = allResults.size();
+        SearchHits hits = cachedSearchService.getAllResults(query, siteUrl);
+        int total = hits.size();
         int toIndex = Math.min(offset + limit, total);
 
         if (offset >= total) {
             return new SearchResponse(true, total, List.of());
         }
 
-        List<SearchResultDto> paged = allResults.subList(offset, toIndex);
+        int[] ranked = hits.ranked(toIndex);
+        List<SearchResultDto> paged = new ArrayList<>(toIndex - offset);
+        for (int i = offset; i < toIndex; i++) {
+            int hit = ranked[i];
+            SearchResultRenderer.PageSummary page = searchResultRenderer.summarize(
+                    hits.pageIds()[hit], hits.version(hit), hits.lemmas());
+            if (page != null) {
+                paged.add(new SearchResultDto(page.site(), page.siteName(), page.uri(),
+                        page.title(), page.snippet(), hits.relevance()[hit]));
+            }
+        }
         return new SearchResponse(true, total, paged);
     }
 }
@@ -1,54 +1,157 @@
 package searchengine.services.impl.searchImpl;
 
 import lombok.RequiredArgsConstructor;
-import org.jsoup.Jsoup;
 import org.springframework.stereotype.Service;
+import searchengine.models.PageTextEntity;
+import searchengine.services.impl.invertedIndex.VarInt;
+import searchengine.services.impl.textWorkers.PageTextExtractor;
 import searchengine.services.impl.textWorkers.TextLemmaParser;
 
+import java.util.Arrays;
 import java.util.List;
-import java.util.OptionalInt;
-import java.util.stream.IntStream;
+import java.util.function.IntPredicate;
 
 @Service
 @RequiredArgsConstructor
 public class SnippetGenerator {
+    private static final int CONTEXT_SIZE = 20;
+    private static final int WINDOW_SIZE = CONTEXT_SIZE * 2 + 1;
+
     private final TextLemmaParser textLemmaParser;
 
-    public String generateSnippet(String content, List<String> lemmas) {
-        String text = Jsoup.parse(content).text();
+    /**
+     * @param lemmaPositions позиции каждой леммы запроса на странице из позиционного индекса;
+     *                       без них текст просматривается слово за словом с лемматизацией
+     */
+    public String generateSnippet(PageTextEntity pageText, List<String> lemmas, int[][] lemmaPositions) {
+        String text = pageText.getText();
+        int[] offsets = VarInt.decodeDeltas(pageText.getWordOffsets());
 
-        String[] words = text.split("\\s+");
-        int contextSize = 20;
-        OptionalInt matchIndexOpt = IntStream.range(0, words.length)
-                .filter(i -> lemmas.stream()
-                        .anyMatch(lemma -> textLemmaParser.getZeroForm(words[i]).toLowerCase().contains(lemma.toLowerCase())))
-                .findFirst();
+        long[] hits = textHits(pageText.getTitle(), lemmaPositions, offsets.length);
+        if (hits != null) {
+            return snippetAroundBestWindow(text, offsets, hits, lemmaPositions.length);
+        }
 
-        if (matchIndexOpt.isEmpty()) {
+        int matchIndex = -1;
+        for (int i = 0; i < offsets.length; i++) {
+            if (matches(word(text, offsets[i]), lemmas)) {
+                matchIndex = i;
+                break;
+            }
+        }
+        if (matchIndex < 0) {
             return "";
         }
 
-        int matchIndex = matchIndexOpt.getAsInt();
+        int start = Math.max(0, matchIndex - CONTEXT_SIZE);
+        int end = Math.min(offsets.length, matchIndex + CONTEXT_SIZE + 1);
+        int found = matchIndex;
+        return render(text, offsets, start, end, i -> i == found || matches(word(text, offsets[i]), lemmas));
+    }
 
-        int start = Math.max(0, matchIndex - contextSize);
-        int end = Math.min(words.length, matchIndex + contextSize + 1);
+    /**
+     * Окно из {@link #WINDOW_SIZE} слов с наибольшим числом разных лемм запроса,
+     * при равенстве — с наибольшим числом вхождений. Подсвечиваются слова из индекса,
+     * без повторной лемматизации.
+     */
+    private static String snippetAroundBestWindow(String text, int[] offsets, long[] hits, int lemmaCount) {
+        int[] inWindow = new int[lemmaCount];
+        int distinct = 0;
+        int bestDistinct = -1;
+        int bestCount = 0;
+        int bestLo = 0;
+        int bestHi = 0;
+        int lo = 0;
+        for (int hi = 0; hi < hits.length; hi++) {
+            if (inWindow[lemma(hits[hi])]++ == 0) distinct++;
+            while (word(hits[hi]) - word(hits[lo]) >= WINDOW_SIZE) {
+                if (--inWindow[lemma(hits[lo])] == 0) distinct--;
+                lo++;
+            }
+            int count = hi - lo + 1;
+            if (distinct > bestDistinct || (distinct == bestDistinct && count > bestCount)) {
+                bestDistinct = distinct;
+                bestCount = count;
+                bestLo = lo;
+                bestHi = hi;
+            }
+        }
 
-        StringBuilder snippet = new StringBuilder();
-        for (int i = start; i < end; i++) {
-            String word = words[i];
+        int center = (word(hits[bestLo]) + word(hits[bestHi])) >>> 1;
+        int start = Math.max(0, Math.min(center - CONTEXT_SIZE, offsets.length - WINDOW_SIZE));
+        int end = Math.min(offsets.length, start + WINDOW_SIZE);
 
-            String finalWord = word;
-            boolean shouldHighlight = lemmas.stream()
-                    .anyMatch(lemma -> textLemmaParser.getZeroForm(finalWord).toLowerCase().contains(lemma.toLowerCase()));
+        int[] words = new int[hits.length];
+        for (int i = 0; i < hits.length; i++) {
+            words[i] = word(hits[i]);
+        }
+        return render(text, offsets, start, end, i -> Arrays.binarySearch(words, i) >= 0);
+    }
 
-            if (shouldHighlight) {
-                String cleanWord = word.replaceAll("\\p{Punct}", "");
-                word = word.replaceAll("(?i)(" + cleanWord + ")", "<b>$1</b>");
+    /**
+     * Переводит позиции в тексте для лемматизации (заголовок + текст) в номера слов текста
+     * и упаковывает как (номер слова << 32 | номер леммы) по возрастанию.
+     *
+     * @return null, если позиций нет или ни одна не попала в текст
+     */
+    private static long[] textHits(String title, int[][] lemmaPositions, int wordCount) {
+        if (lemmaPositions == null) return null;
+        int titleWords = PageTextExtractor.countWords(title);
+        int total = 0;
+        for (int[] positions : lemmaPositions) {
+            if (positions != null) total += positions.length;
+        }
+        long[] hits = new long[total];
+        int n = 0;
+        for (int l = 0; l < lemmaPositions.length; l++) {
+            if (lemmaPositions[l] == null) continue;
+            for (int position : lemmaPositions[l]) {
+                int wordIndex = position - titleWords;
+                if (wordIndex >= 0 && wordIndex < wordCount) {
+                    hits[n++] = ((long) wordIndex << 32) | l;
+                }
             }
+        }
+        if (n == 0) return null;
+        Arrays.sort(hits, 0, n);
+        return Arrays.copyOf(hits, n);
+    }
 
-            snippet.append(word).append(" ");
+    private static String render(String text, int[] offsets, int start, int end, IntPredicate highlight) {
+        StringBuilder snippet = new StringBuilder();
+        int cursor = offsets[start];
+        for (int i = start; i < end; i++) {
+            int wordStart = offsets[i];
+            int wordEnd = PageTextExtractor.wordEnd(text, wordStart);
+            snippet.append(text, cursor, wordStart);
+            if (highlight.test(i)) {
+                snippet.append("<b>").append(text, wordStart, wordEnd).append("</b>");
+            } else {
+                snippet.append(text, wordStart, wordEnd);
+            }
+            cursor = wordEnd;
         }
 
         return snippet.toString().trim() + "...";
     }
+
+    private boolean matches(String word, List<String> lemmas) {
+        String zeroForm = textLemmaParser.getZeroForm(word).toLowerCase();
+        for (String lemma : lemmas) {
+            if (zeroForm.contains(lemma.toLowerCase())) return true;
+        }
+        return false;
+    }
+
+    private static String word(String text, int start) {
+        return text.substring(start, PageTextExtractor.wordEnd(text, start));
+    }
+
+    private static int word(long hit) {
+        return (int) (hit >>> 32);
+    }
+
+    private static int lemma(long hit) {
+        return (int) hit;
+    }
 }
@@ -0,0 +1,75 @@
+package searchengine.services.impl.searchImpl;
+
+/**
+ * Выбор K лучших результатов через ограниченную min-кучу на примитивных массивах:
+ * O(n log k) вместо сортировки всех найденных страниц.
+ */
+public final class TopKSelector {
+    private TopKSelector() {
+    }
+
+    /**
+     * @return позиции в hits, отсортированные по убыванию релевантности (при равенстве — по id страницы)
+     */
+    public static int[] select(SearchHits hits, int k) {
+        k = Math.min(k, hits.size());
+        if (k <= 0) return new int[0];
+
+        float[] relevance = hits.relevance();
+        int[] pageIds = hits.pageIds();
+        int[] heap = new int[k];
+        int heapSize = 0;
+
+        for (int i = 0; i < hits.size(); i++) {
+            if (heapSize < k) {
+                heap[heapSize] = i;
+                siftUp(heap, heapSize++, relevance, pageIds);
+            } else if (better(i, heap[0], relevance, pageIds)) {
+                heap[0] = i;
+                siftDown(heap, heapSize, relevance, pageIds);
+            }
+        }
+
+        int[] ordered = new int[heapSize];
+        for (int i = heapSize - 1; i >= 0; i--) {
+            ordered[i] = heap[0];
+            heap[0] = heap[--heapSize];
+            siftDown(heap, heapSize, relevance, pageIds);
+        }
+        return ordered;
+    }
+
+    private static boolean better(int a, int b, float[] relevance, int[] pageIds) {
+        int cmp = Float.compare(relevance[a], relevance[b]);
+        return cmp != 0 ? cmp > 0 : pageIds[a] < pageIds[b];
+    }
+
+    private static void siftUp(int[] heap, int pos, float[] relevance, int[] pageIds) {
+        int item = heap[pos];
+        while (pos > 0) {
+            int parent = (pos - 1) >>> 1;
+            if (!better(heap[parent], item, relevance, pageIds)) break;
+            heap[pos] = heap[parent];
+            pos = parent;
+        }
+        heap[pos] = item;
+    }
+
+    private static void siftDown(int[] heap, int size, float[] relevance, int[] pageIds) {
+        if (size == 0) return;
+        int item = heap[0];
+        int pos = 0;
+        int half = size >>> 1;
+        while (pos < half) {
+            int child = 2 * pos + 1;
+            int right = child + 1;
+            if (right < size && better(heap[child], heap[right], relevance, pageIds)) {
+                child = right;
+            }
+            if (!better(item, heap[child], relevance, pageIds)) break;
+            heap[pos] = heap[child];
+            pos = child;
+        }
+        heap[pos] = item;
+    }
+}
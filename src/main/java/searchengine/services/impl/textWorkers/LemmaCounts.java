@@ -0,0 +1,166 @@
+package searchengine.services.impl.textWorkers;
+
+import searchengine.services.impl.invertedIndex.VarInt;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.ObjIntConsumer;
+
+/**
+ * Частоты лемм страницы: открытая адресация с линейным пробированием
+ * и примитивными счётчиками вместо HashMap&lt;String, Integer&gt;.
+ * При заполнении через {@link #addAt} хранит и позиции вхождений каждой леммы.
+ */
+public final class LemmaCounts {
+    private String[] keys;
+    private int[] values;
+    private int[][] positions;
+    private int size;
+
+    public LemmaCounts() {
+        this(16);
+    }
+
+    public LemmaCounts(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(4, expectedSize) * 2 - 1) << 1;
+        keys = new String[capacity];
+        values = new int[capacity];
+    }
+
+    public void add(String key, int delta) {
+        values[findOrInsert(key)] += delta;
+        growIfFull();
+    }
+
+    /**
+     * Одно вхождение леммы в позиции position; частота растёт на единицу.
+     */
+    public void addAt(String key, int position) {
+        if (positions == null) {
+            positions = new int[keys.length][];
+        }
+        int slot = findOrInsert(key);
+        int index = values[slot]++;
+        int[] slotPositions = positions[slot];
+        if (slotPositions == null) {
+            slotPositions = positions[slot] = new int[Math.max(4, index + 1)];
+        } else if (index == slotPositions.length) {
+            slotPositions = positions[slot] = Arrays.copyOf(slotPositions, index * 2);
+        }
+        slotPositions[index] = position;
+        growIfFull();
+    }
+
+    /**
+     * @return частота леммы или 0, если её нет
+     */
+    public int get(String key) {
+        int slot = find(key);
+        return slot < 0 ? 0 : values[slot];
+    }
+
+    /**
+     * @return позиции леммы по возрастанию или null, если позиции не собирались
+     */
+    public int[] positions(String key) {
+        if (positions == null) return null;
+        int slot = find(key);
+        if (slot < 0 || positions[slot] == null) return null;
+        int[] sorted = Arrays.copyOf(positions[slot], values[slot]);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+
+    /**
+     * Позиции леммы, сжатые дельтами в varint, — формат search_index.positions.
+     */
+    public byte[] encodedPositions(String key) {
+        int[] sorted = positions(key);
+        return sorted == null ? null : VarInt.encodeDeltas(sorted, sorted.length);
+    }
+
+    public boolean contains(String key) {
+        return get(key) != 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public void forEach(ObjIntConsumer<String> consumer) {
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != null) {
+                consumer.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    public List<String> keys() {
+        List<String> result = new ArrayList<>(size);
+        for (String key : keys) {
+            if (key != null) result.add(key);
+        }
+        return result;
+    }
+
+    static int mix(int hash) {
+        int h = hash * 0x9E3779B9;
+        return h ^ (h >>> 16);
+    }
+
+    private int find(String key) {
+        int mask = keys.length - 1;
+        int slot = mix(key.hashCode()) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key)) return slot;
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private int findOrInsert(String key) {
+        int mask = keys.length - 1;
+        int slot = mix(key.hashCode()) & mask;
+        while (keys[slot] != null) {
+            if (keys[slot].equals(key)) return slot;
+            slot = (slot + 1) & mask;
+        }
+        keys[slot] = key;
+        values[slot] = 0;
+        size++;
+        return slot;
+    }
+
+    private void growIfFull() {
+        if (size * 2 > keys.length) {
+            grow();
+        }
+    }
+
+    private void grow() {
+        String[] oldKeys = keys;
+        int[] oldValues = values;
+        int[][] oldPositions = positions;
+        keys = new String[oldKeys.length * 2];
+        values = new int[oldKeys.length * 2];
+        positions = oldPositions != null ? new int[oldKeys.length * 2][] : null;
+        int mask = keys.length - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int slot = mix(oldKeys[i].hashCode()) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = oldKeys[i];
+            values[slot] = oldValues[i];
+            if (oldPositions != null) {
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+}
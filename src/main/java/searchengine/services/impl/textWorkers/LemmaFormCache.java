@@ -0,0 +1,86 @@
+package searchengine.services.impl.textWorkers;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.log4j.Log4j2;
+import org.apache.lucene.morphology.LuceneMorphology;
+import org.apache.lucene.morphology.WrongCharaterException;
+import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
+import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
+import org.springframework.stereotype.Component;
+import searchengine.config.MorphologySettings;
+
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * Общий для индексации и сниппетов кэш «словоформа → (нормальная форма, служебное ли слово)».
+ * Частоты слов в тексте распределены по Ципфу, поэтому несколько тысяч форм покрывают
+ * почти все вхождения и морфология вызывается только на промахах.
+ * Размер ограничен оценкой занимаемой памяти; статистика выгружается в метрики
+ * как cache.* с тегом cache=lemmaForms.
+ */
+@Log4j2
+@Component
+public class LemmaFormCache {
+    private static final String[] SERVICE_TAGS = {"МЕЖД", "ПРЕДЛ", "СОЮЗ", "ЧАСТ", "PREP", "CONJ", "ART", "PART"};
+    private static final int ENTRY_OVERHEAD_BYTES = 64;
+
+    private final RussianLuceneMorphology morphRU;
+    private final EnglishLuceneMorphology morphEN;
+    private final Cache<String, WordForm> cache;
+    private final Function<String, WordForm> loader = this::analyse;
+
+    public LemmaFormCache(RussianLuceneMorphology morphRU, EnglishLuceneMorphology morphEN,
+                          MorphologySettings settings, MeterRegistry meterRegistry) {
+        this.morphRU = morphRU;
+        this.morphEN = morphEN;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(settings.getFormCacheMaxBytes())
+                .weigher(LemmaFormCache::weigh)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, "lemmaForms");
+    }
+
+    /**
+     * @param form словоформа в нижнем регистре целиком из латиницы или кириллицы
+     */
+    public WordForm get(String form) {
+        return cache.get(form, loader);
+    }
+
+    private WordForm analyse(String form) {
+        LuceneMorphology morphology = isCyrillic(form) ? morphRU : morphEN;
+        try {
+            List<String> infos = morphology.getMorphInfo(form);
+            if (infos.isEmpty()) return WordForm.UNKNOWN;
+            String info = infos.get(0);
+            int bar = info.indexOf('|');
+            if (bar < 0) return WordForm.UNKNOWN;
+            return new WordForm(info.substring(0, bar).trim(), isServiceWord(info, bar));
+        } catch (WrongCharaterException e) {
+            log.debug("Morphology rejected \"{}\": {}", form, e.getMessage());
+            return WordForm.UNKNOWN;
+        }
+    }
+
+    private static boolean isServiceWord(String info, int from) {
+        for (String tag : SERVICE_TAGS) {
+            if (info.indexOf(tag, from) >= 0) return true;
+        }
+        return false;
+    }
+
+    private static boolean isCyrillic(String form) {
+        char c = form.charAt(0);
+        return (c >= 'а' && c <= 'я') || c == 'ё';
+    }
+
+    private static int weigh(String form, WordForm value) {
+        int normal = value.normalForm() == null ? 0 : value.normalForm().length();
+        return ENTRY_OVERHEAD_BYTES + 2 * (form.length() + normal);
+    }
+}
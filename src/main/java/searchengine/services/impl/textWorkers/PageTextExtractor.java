@@ -0,0 +1,71 @@
+package searchengine.services.impl.textWorkers;
+
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.stereotype.Component;
+import searchengine.models.PageTextEntity;
+import searchengine.services.impl.invertedIndex.VarInt;
+
+import java.util.Arrays;
+
+/**
+ * Извлекает заголовок, видимый текст и смещения слов один раз при обходе,
+ * чтобы при поиске не разбирать HTML заново.
+ */
+@Component
+public class PageTextExtractor {
+    private static final int MAX_TITLE_LENGTH = 1024;
+
+    public PageTextEntity extract(Document document) {
+        String title = document.title();
+        if (title.length() > MAX_TITLE_LENGTH) {
+            title = title.substring(0, MAX_TITLE_LENGTH);
+        }
+        Element body = document.body();
+        String text = body != null ? body.text() : document.text();
+        return new PageTextEntity(title, text, encodeWordOffsets(text));
+    }
+
+    public static byte[] encodeWordOffsets(String text) {
+        int[] offsets = new int[16];
+        int count = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean wordChar = isWordChar(text.charAt(i));
+            if (wordChar && !inWord) {
+                if (count == offsets.length) {
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                offsets[count++] = i;
+            }
+            inWord = wordChar;
+        }
+        return VarInt.encodeDeltas(offsets, count);
+    }
+
+    /**
+     * Число слов в тексте по тому же правилу, что и смещения слов.
+     */
+    public static int countWords(String text) {
+        int count = 0;
+        boolean inWord = false;
+        for (int i = 0; i < text.length(); i++) {
+            boolean wordChar = isWordChar(text.charAt(i));
+            if (wordChar && !inWord) count++;
+            inWord = wordChar;
+        }
+        return count;
+    }
+
+    public static int wordEnd(String text, int start) {
+        int end = start;
+        while (end < text.length() && isWordChar(text.charAt(end))) {
+            end++;
+        }
+        return end;
+    }
+
+    public static boolean isWordChar(char c) {
+        return Character.isLetterOrDigit(c);
+    }
+}
@@ -0,0 +1,121 @@
+package searchengine.services.impl.textWorkers;
+
+import searchengine.enums.LangEnum;
+
+import java.util.Arrays;
+
+/**
+ * Частоты словоформ одного текста на открытой адресации. Ключ сравнивается
+ * с буфером токенизатора посимвольно, строка создаётся только для новой словоформы,
+ * так что повтор слова обходится без выделения памяти, а морфология вызывается
+ * один раз на словоформу, а не на каждое вхождение. По запросу копит ещё и позиции
+ * вхождений каждой словоформы (первые count элементов массива).
+ */
+final class SurfaceFormCounts implements WordTokenizer.TokenSink {
+
+    @FunctionalInterface
+    interface FormConsumer {
+        void accept(String form, LangEnum lang, int count, int[] positions);
+    }
+
+    private String[] forms = new String[64];
+    private int[] hashes = new int[64];
+    private int[] counts = new int[64];
+    private LangEnum[] langs = new LangEnum[64];
+    private int[][] positions;
+    private int size;
+
+    SurfaceFormCounts() {
+        this(false);
+    }
+
+    SurfaceFormCounts(boolean trackPositions) {
+        positions = trackPositions ? new int[64][] : null;
+    }
+
+    @Override
+    public void accept(char[] buffer, int length, LangEnum lang, int position) {
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int mask = forms.length - 1;
+        int slot = LemmaCounts.mix(hash) & mask;
+        while (forms[slot] != null) {
+            if (hashes[slot] == hash && sameChars(forms[slot], buffer, length)) {
+                addPosition(slot, counts[slot], position);
+                counts[slot]++;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        forms[slot] = new String(buffer, 0, length);
+        hashes[slot] = hash;
+        counts[slot] = 1;
+        langs[slot] = lang;
+        if (positions != null) {
+            positions[slot] = new int[] {position};
+        }
+        if (++size * 2 > forms.length) {
+            grow();
+        }
+    }
+
+    int size() {
+        return size;
+    }
+
+    void forEach(FormConsumer consumer) {
+        for (int i = 0; i < forms.length; i++) {
+            if (forms[i] != null) {
+                consumer.accept(forms[i], langs[i], counts[i], positions != null ? positions[i] : null);
+            }
+        }
+    }
+
+    private void addPosition(int slot, int index, int position) {
+        if (positions == null) return;
+        int[] slotPositions = positions[slot];
+        if (index == slotPositions.length) {
+            slotPositions = positions[slot] = Arrays.copyOf(slotPositions, index * 2);
+        }
+        slotPositions[index] = position;
+    }
+
+    private static boolean sameChars(String form, char[] buffer, int length) {
+        if (form.length() != length) return false;
+        for (int i = 0; i < length; i++) {
+            if (form.charAt(i) != buffer[i]) return false;
+        }
+        return true;
+    }
+
+    private void grow() {
+        String[] oldForms = forms;
+        int[] oldHashes = hashes;
+        int[] oldCounts = counts;
+        LangEnum[] oldLangs = langs;
+        int[][] oldPositions = positions;
+        int capacity = oldForms.length * 2;
+        forms = new String[capacity];
+        hashes = new int[capacity];
+        counts = new int[capacity];
+        langs = new LangEnum[capacity];
+        positions = oldPositions != null ? new int[capacity][] : null;
+        int mask = capacity - 1;
+        for (int i = 0; i < oldForms.length; i++) {
+            if (oldForms[i] == null) continue;
+            int slot = LemmaCounts.mix(oldHashes[i]) & mask;
+            while (forms[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            forms[slot] = oldForms[i];
+            hashes[slot] = oldHashes[i];
+            counts[slot] = oldCounts[i];
+            langs[slot] = oldLangs[i];
+            if (oldPositions != null) {
+                positions[slot] = oldPositions[i];
+            }
+        }
+    }
+}
@@ -2,84 +2,77 @@ package searchengine.services.impl.textWorkers;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.log4j.Log4j2;
-import org.apache.lucene.morphology.WrongCharaterException;
-import org.apache.lucene.morphology.english.EnglishLuceneMorphology;
-import org.apache.lucene.morphology.russian.RussianLuceneMorphology;
 import org.springframework.stereotype.Component;
-import searchengine.enums.LangEnum;
-
-import java.util.*;
+import searchengine.config.SearchSettings;
 
 @Log4j2
 @Component
 @RequiredArgsConstructor
 public class TextLemmaParser {
-    private final RussianLuceneMorphology morphRU;
-    private final EnglishLuceneMorphology morphEN;
-    public static List<String> wrongWords = Collections.synchronizedList(new ArrayList<>());
-
-    public HashMap<String, Integer> sortWordsOnRussianAndEnglishWords(final String pageText) {
-        List<String> words = Arrays.asList(removeHtmlTags(pageText).split("[ \\t]+")).parallelStream()
-                .map(s -> s.replaceAll("\\p{Punct}", ""))
-                .map(String::trim)
-                .map(String::toLowerCase)
-                .filter(s -> !s.isEmpty())
-                .toList();
-
-        HashMap<String, Integer> map = new HashMap<>();
-
-        List<String> englishWords = removeFunctionsWords(
-                words.stream().filter(s -> s.matches("[a-z]+")).toList(), LangEnum.ENG);
-        englishWords.forEach(word -> map.compute(word, (k, v) -> v == null ? 1 : v + 1));
+    private final LemmaFormCache lemmaFormCache;
+    private final SearchSettings searchSettings;
 
-        List<String> russianWords = removeFunctionsWords(
-                words.stream().filter(s -> s.matches("[а-яё]+")).toList(), LangEnum.RUS);
-        russianWords.forEach(word -> map.compute(word, (k, v) -> v == null ? 1 : v + 1));
-
-        log.debug("Wrong words {}", wrongWords);
-
-        return map;
+    /**
+     * Леммы текста с частотами. Токенизатор считает словоформы без регулярных выражений,
+     * нормальная форма каждой различной словоформы берётся из {@link LemmaFormCache}.
+     */
+    public LemmaCounts sortWordsOnRussianAndEnglishWords(final String pageText) {
+        return lemmatize(pageText, false);
     }
 
-    public String getZeroForm(final String word) {
-        String cleaned = word.replaceAll("[^\\p{IsAlphabetic}]", "").toLowerCase();
-        if (cleaned.matches("[а-яё]+")) {
-            return getSimpleForm(getMorphInfoSave(cleaned, LangEnum.RUS));
-        } else if (cleaned.matches("[a-z]+")) {
-            return getSimpleForm(getMorphInfoSave(cleaned, LangEnum.ENG));
-        }
-        return cleaned;
+    /**
+     * Леммы страницы для индекса: с позициями слов, если включён позиционный индекс.
+     */
+    public LemmaCounts lemmatizePage(final String pageText) {
+        return lemmatize(pageText, searchSettings.isPositionalIndex());
     }
 
-    private String getSimpleForm(final String word) {
-        return word.substring(0, word.indexOf('|')).trim();
+    /**
+     * Леммы с позициями слов всегда — для фраз в запросе.
+     */
+    public LemmaCounts lemmatizeWithPositions(final String text) {
+        return lemmatize(text, true);
     }
 
-    private List<String> removeFunctionsWords(final List<String> words, final LangEnum lang) {
-        return words.stream()
-                .map(word -> getMorphInfoSave(word, lang))
-                .filter(word -> !word.isBlank())
-                .filter(this::isNotServiceWord)
-                .map(this::getSimpleForm)
-                .toList();
-    }
+    private LemmaCounts lemmatize(String text, boolean withPositions) {
+        LemmaCounts lemmas = new LemmaCounts();
+        if (text == null || text.isEmpty()) return lemmas;
 
-    private boolean isNotServiceWord(String word) {
-        List<String> skipTags = List.of("МЕЖД", "ПРЕДЛ", "СОЮЗ", "ЧАСТ", "PREP", "CONJ", "ART", "PART");
-        return skipTags.stream().noneMatch(word::contains);
-    }
+        SurfaceFormCounts forms = new SurfaceFormCounts(withPositions);
+        WordTokenizer.tokenize(text, forms);
+        forms.forEach((form, lang, count, positions) -> {
+            WordForm wordForm = lemmaFormCache.get(form);
+            if (!wordForm.isLemma()) return;
+            if (positions == null) {
+                lemmas.add(wordForm.normalForm(), count);
+                return;
+            }
+            for (int i = 0; i < count; i++) {
+                lemmas.addAt(wordForm.normalForm(), positions[i]);
+            }
+        });
 
-    private String getMorphInfoSave(final String word, final LangEnum lang) {
-        try {
-            return lang == LangEnum.RUS ? morphRU.getMorphInfo(word).get(0) : morphEN.getMorphInfo(word).get(0);
-        } catch (WrongCharaterException e) {
-            log.error(e.getMessage());
-            wrongWords.add(word);
-            return "";
-        }
+        return lemmas;
     }
 
-    private static String removeHtmlTags(String htmlCode) {
-        return htmlCode != null ? htmlCode.replaceAll("<[^>]*>", "").trim() : null;
+    public String getZeroForm(final String word) {
+        StringBuilder cleaned = new StringBuilder(word.length());
+        boolean latin = true;
+        boolean cyrillic = true;
+        for (int i = 0; i < word.length(); i++) {
+            char c = word.charAt(i);
+            if (!Character.isAlphabetic(c)) continue;
+            char lower = WordTokenizer.toLowerCase(c);
+            cleaned.append(lower);
+            latin &= lower >= 'a' && lower <= 'z';
+            cyrillic &= (lower >= 'а' && lower <= 'я') || lower == 'ё';
+        }
+        if (cleaned.isEmpty()) return "";
+        String form = cleaned.toString();
+        if (latin || cyrillic) {
+            String normalForm = lemmaFormCache.get(form).normalForm();
+            return normalForm != null ? normalForm : form;
+        }
+        return form;
     }
 }
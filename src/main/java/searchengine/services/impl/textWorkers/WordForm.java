@@ -0,0 +1,13 @@
+package searchengine.services.impl.textWorkers;
+
+/**
+ * Результат морфологического разбора словоформы. normalForm равен null,
+ * если морфология не смогла разобрать слово.
+ */
+public record WordForm(String normalForm, boolean serviceWord) {
+    static final WordForm UNKNOWN = new WordForm(null, false);
+
+    public boolean isLemma() {
+        return normalForm != null && !serviceWord;
+    }
+}
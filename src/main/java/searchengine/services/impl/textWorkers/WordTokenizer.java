@@ -0,0 +1,68 @@
+package searchengine.services.impl.textWorkers;
+
+import searchengine.enums.LangEnum;
+
+import java.util.Arrays;
+
+/**
+ * Однопроходный разбор текста на слова без регулярных выражений. Слово — непрерывная
+ * последовательность букв и цифр, как в {@link PageTextExtractor}; дальше идут только
+ * слова целиком из латиницы или целиком из кириллицы. Регистр понижается прямо
+ * в общем буфере, который отдаётся в {@link TokenSink} без создания строк.
+ * Позиция токена — порядковый номер слова в тексте с учётом отброшенных слов,
+ * то есть индекс в смещениях слов {@link PageTextExtractor#encodeWordOffsets}.
+ */
+public final class WordTokenizer {
+
+    @FunctionalInterface
+    public interface TokenSink {
+        void accept(char[] buffer, int length, LangEnum lang, int position);
+    }
+
+    private WordTokenizer() {
+    }
+
+    /**
+     * @return число всех слов в тексте, включая отброшенные
+     */
+    public static int tokenize(CharSequence text, TokenSink sink) {
+        char[] buffer = new char[32];
+        int length = 0;
+        boolean latin = true;
+        boolean cyrillic = true;
+        int words = 0;
+        int n = text.length();
+        for (int i = 0; i <= n; i++) {
+            char c = i < n ? text.charAt(i) : ' ';
+            if (PageTextExtractor.isWordChar(c)) {
+                if (length == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, length * 2);
+                }
+                char lower = toLowerCase(c);
+                buffer[length++] = lower;
+                latin &= lower >= 'a' && lower <= 'z';
+                cyrillic &= (lower >= 'а' && lower <= 'я') || lower == 'ё';
+                continue;
+            }
+            if (length > 0) {
+                if (latin) {
+                    sink.accept(buffer, length, LangEnum.ENG, words);
+                } else if (cyrillic) {
+                    sink.accept(buffer, length, LangEnum.RUS, words);
+                }
+                words++;
+                length = 0;
+                latin = true;
+                cyrillic = true;
+            }
+        }
+        return words;
+    }
+
+    static char toLowerCase(char c) {
+        if (c >= 'A' && c <= 'Z') return (char) (c + ('a' - 'A'));
+        if (c >= 'А' && c <= 'Я') return (char) (c + ('а' - 'А'));
+        if (c == 'Ё') return 'ё';
+        return c < 128 ? c : Character.toLowerCase(c);
+    }
+}
@@ -0,0 +1,98 @@
+package searchengine.services.impl.textWorkers;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Замер скорости разбора текста на слова, токенов в секунду: прежний разбор
+ * регулярными выражениями против {@link WordTokenizer} + {@link SurfaceFormCounts}.
+ * Морфология в замер не входит. Текст — смесь русских и английских слов
+ * с пунктуацией, генерируется из фиксированного seed.
+ * <p>
+ * Запуск: {@code mvn -q test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=searchengine.services.impl.textWorkers.TokenizerBenchmark [-Dexec.args="400000 10"]}
+ * — аргументы: число слов в тексте и число замеров.
+ */
+public final class TokenizerBenchmark {
+    private static final String[] RU = {
+            "поиск", "страница", "индекс", "сайт", "лемма", "запрос", "текст", "слово", "быстрый",
+            "новый", "работать", "искать", "документ", "результат", "Москва", "время", "город", "ещё"
+    };
+    private static final String[] EN = {
+            "search", "page", "index", "site", "query", "text", "word", "fast", "engine",
+            "document", "result", "Java", "crawler", "the", "and", "of"
+    };
+    private static final String[] PUNCT = {"", "", "", ",", ".", "!", "?", ":", ";", "—", "(", ")"};
+
+    private static volatile long sink;
+
+    private TokenizerBenchmark() {
+    }
+
+    public static void main(String[] args) {
+        int words = args.length > 0 ? Integer.parseInt(args[0]) : 400_000;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        String text = generate(words, new Random(42));
+
+        System.out.printf("%d words, %d chars, %d runs%n", words, text.length(), runs);
+        report("regex (before)", text, words, runs, TokenizerBenchmark::regexTokens);
+        report("WordTokenizer (after)", text, words, runs, TokenizerBenchmark::charTokens);
+    }
+
+    private static void report(String name, String text, int words, int runs, Tokenizer tokenizer) {
+        for (int i = 0; i < runs; i++) {
+            sink += tokenizer.count(text);
+        }
+        long[] times = new long[runs];
+        for (int i = 0; i < runs; i++) {
+            long started = System.nanoTime();
+            sink += tokenizer.count(text);
+            times[i] = System.nanoTime() - started;
+        }
+        Arrays.sort(times);
+        double median = times[runs / 2] / 1e9;
+        System.out.printf("%-22s median %8.1f ms, %6.2f M tokens/s%n", name, median * 1e3, words / median / 1e6);
+    }
+
+    /**
+     * Прежний разбор из TextLemmaParser без вызова морфологии.
+     */
+    private static int regexTokens(String text) {
+        List<String> words = Arrays.asList(text.replaceAll("<[^>]*>", "").trim().split("[ \\t]+")).parallelStream()
+                .map(s -> s.replaceAll("\\p{Punct}", ""))
+                .map(String::trim)
+                .map(String::toLowerCase)
+                .filter(s -> !s.isEmpty())
+                .toList();
+        Map<String, Integer> counts = new HashMap<>();
+        words.stream().filter(s -> s.matches("[a-z]+"))
+                .forEach(word -> counts.merge(word, 1, Integer::sum));
+        words.stream().filter(s -> s.matches("[а-яё]+"))
+                .forEach(word -> counts.merge(word, 1, Integer::sum));
+        return counts.size();
+    }
+
+    private static int charTokens(String text) {
+        SurfaceFormCounts forms = new SurfaceFormCounts();
+        return WordTokenizer.tokenize(text, forms);
+    }
+
+    private static String generate(int words, Random random) {
+        StringBuilder text = new StringBuilder(words * 8);
+        for (int i = 0; i < words; i++) {
+            String[] dictionary = random.nextInt(3) == 0 ? EN : RU;
+            text.append(dictionary[random.nextInt(dictionary.length)])
+                    .append(PUNCT[random.nextInt(PUNCT.length)])
+                    .append(' ');
+        }
+        return text.toString();
+    }
+
+    @FunctionalInterface
+    private interface Tokenizer {
+        int count(String text);
+    }
+}